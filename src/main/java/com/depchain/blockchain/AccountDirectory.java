@@ -0,0 +1,257 @@
+package com.depchain.blockchain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.datatypes.Address;
+
+/**
+ * Dense integer ids of the accounts, shared by a world state, its layers and its snapshots.
+ *
+ * Ids are assigned in order as accounts are added to the genesis state. Both the name and the
+ * address of an account resolve to its id, and transactions resolve theirs once (see
+ * {@link Transaction#resolveAccounts}), so execution only looks accounts up by id.
+ * The directory also keeps the identity of each account, so accounts kept in an
+ * {@link AccountStore} can be rebuilt.
+ *
+ * Nothing is allocated per account, so the heap stays flat however many accounts there are:
+ * the EVM addresses are packed 20 bytes per id, the identities (address, name and key paths) are
+ * UTF-8 records in pages of {@value #PAGE_SIZE} bytes, and names and EVM addresses find their id
+ * in open addressing tables of ids. Strings and addresses are only built when asked for.
+ *
+ * Accounts are only registered while the genesis state loads, before the directory is shared
+ * with other threads.
+ */
+final class AccountDirectory {
+    private static final int PAGE_SIZE = 1 << 20;
+    private static final int ADDRESS_SIZE = 20;
+    private static final int ADDRESS = 0; // Fields of an identity record, in order
+    private static final int NAME = 1;
+    private static final int PUBLIC_KEY_PATH = 2;
+    private static final int PRIVATE_KEY_PATH = 3;
+
+    private byte[][] pages = new byte[0][];
+    private int pageUsed = PAGE_SIZE; // Bytes used in the last page
+    private long[] identities = new long[16]; // Page index and offset of each account's record
+    private byte[] evmAddresses = new byte[16 * ADDRESS_SIZE]; // By id, which ignores case
+    private int[] byName = new int[32]; // Id + 1 by hash of the name, 0 when free
+    private int[] byEvmAddress = new int[32]; // Id + 1 by hash of the EVM address, 0 when free
+    private final Map<String, Integer> aliases = new HashMap<>(); // Other names of an address registered again, rare
+    private int names = 0;
+    private int size = 0;
+
+    /**
+     * Assigns the next id to an account, or finds the one its address already has.
+     *
+     * @param account The account
+     * @return The id of the account
+     */
+    int register(AccountState account) {
+        int existing = resolve(account.getAddress());
+        if (existing >= 0) {
+            if (account.getName() != null && resolve(account.getName()) < 0) {
+                aliases.put(account.getName(), existing);
+            }
+            account.setId(existing);
+            return existing;
+        }
+        if (size == identities.length) {
+            identities = Arrays.copyOf(identities, size * 2);
+            evmAddresses = Arrays.copyOf(evmAddresses, size * 2 * ADDRESS_SIZE);
+        }
+        int id = size++;
+        identities[id] = append(account.getAddress(), account.getName(), account.getPublicKeyPath(), account.getPrivateKeyPath());
+        System.arraycopy(Address.fromHexString(account.getAddress()).toArrayUnsafe(), 0, evmAddresses, id * ADDRESS_SIZE, ADDRESS_SIZE);
+        if (2 * size > byEvmAddress.length) {
+            byEvmAddress = new int[byEvmAddress.length * 2];
+            for (int other = 0; other < id; other++) {
+                byEvmAddress[freeSlot(byEvmAddress, evmHash(evmAddresses, other * ADDRESS_SIZE))] = other + 1;
+            }
+        }
+        byEvmAddress[freeSlot(byEvmAddress, evmHash(evmAddresses, id * ADDRESS_SIZE))] = id + 1;
+        if (account.getName() != null && resolve(account.getName()) < 0) {
+            addName(account.getName(), id);
+        }
+        account.setId(id);
+        return id;
+    }
+
+    /**
+     * Finds the id of an account.
+     *
+     * @param nameOrAddress The name or the address of the account, the address as registered
+     * @return The id, or -1 if there is no such account
+     */
+    int resolve(String nameOrAddress) {
+        if (nameOrAddress == null) {
+            return -1;
+        }
+        int mask = byName.length - 1;
+        for (int slot = spread(nameOrAddress.hashCode()) & mask; byName[slot] != 0; slot = (slot + 1) & mask) {
+            if (nameOrAddress.equals(field(byName[slot] - 1, NAME))) {
+                return byName[slot] - 1;
+            }
+        }
+        byte[] address = parseAddress(nameOrAddress);
+        if (address == null) {
+            return aliases.getOrDefault(nameOrAddress, -1);
+        }
+        int id = resolve(address);
+        return id >= 0 && nameOrAddress.equals(field(id, ADDRESS)) ? id : -1;
+    }
+
+    /**
+     * Finds the id of an account from the address the EVM uses for it.
+     *
+     * @param address The EVM address
+     * @return The id, or -1 if there is no such account
+     */
+    int resolve(Address address) {
+        return resolve(address.toArrayUnsafe());
+    }
+
+    private int resolve(byte[] address) {
+        int mask = byEvmAddress.length - 1;
+        for (int slot = evmHash(address, 0) & mask; byEvmAddress[slot] != 0; slot = (slot + 1) & mask) {
+            int id = byEvmAddress[slot] - 1;
+            if (Arrays.equals(address, 0, ADDRESS_SIZE, evmAddresses, id * ADDRESS_SIZE, (id + 1) * ADDRESS_SIZE)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates an empty account with the identity of a registered one.
+     *
+     * @param id The id of the account
+     * @return The account, with a zero balance and nonce
+     */
+    AccountState newAccount(int id) {
+        AccountState account = new AccountState(field(id, ADDRESS), field(id, PUBLIC_KEY_PATH), field(id, PRIVATE_KEY_PATH),
+                "0", field(id, NAME));
+        account.setId(id);
+        return account;
+    }
+
+    private void addName(String name, int id) {
+        if (2 * (names + 1) > byName.length) {
+            int[] old = byName;
+            byName = new int[old.length * 2];
+            for (int entry : old) {
+                if (entry != 0) {
+                    byName[freeSlot(byName, spread(field(entry - 1, NAME).hashCode()))] = entry;
+                }
+            }
+        }
+        byName[freeSlot(byName, spread(name.hashCode()))] = id + 1;
+        names++;
+    }
+
+    /**
+     * Appends an identity record, each field as its length (-1 for null) and its UTF-8 bytes.
+     * A record never spans two pages.
+     *
+     * @return The page index in the upper half and the offset in the lower half
+     */
+    private long append(String... fields) {
+        byte[][] encoded = new byte[fields.length][];
+        int length = 0;
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = fields[i] == null ? null : fields[i].getBytes(StandardCharsets.UTF_8);
+            length += Integer.BYTES + (encoded[i] == null ? 0 : encoded[i].length);
+        }
+        if (PAGE_SIZE - pageUsed < length) {
+            pages = Arrays.copyOf(pages, pages.length + 1);
+            pages[pages.length - 1] = new byte[Math.max(PAGE_SIZE, length)];
+            pageUsed = 0;
+        }
+        byte[] page = pages[pages.length - 1];
+        long identity = ((long) (pages.length - 1) << 32) | pageUsed;
+        for (byte[] field : encoded) {
+            int fieldLength = field == null ? -1 : field.length;
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                page[pageUsed++] = (byte) (fieldLength >>> shift);
+            }
+            if (field != null) {
+                System.arraycopy(field, 0, page, pageUsed, field.length);
+                pageUsed += field.length;
+            }
+        }
+        return identity;
+    }
+
+    /**
+     * Reads one field of an account's identity record.
+     */
+    private String field(int id, int index) {
+        byte[] page = pages[(int) (identities[id] >>> 32)];
+        int offset = (int) identities[id];
+        for (int i = 0; ; i++) {
+            int length = ((page[offset] & 0xff) << 24) | ((page[offset + 1] & 0xff) << 16)
+                    | ((page[offset + 2] & 0xff) << 8) | (page[offset + 3] & 0xff);
+            offset += Integer.BYTES;
+            if (i == index) {
+                return length < 0 ? null : new String(page, offset, length, StandardCharsets.UTF_8);
+            }
+            offset += Math.max(length, 0);
+        }
+    }
+
+    /**
+     * Parses a 0x-prefixed address of 40 hex digits, without throwing for names.
+     *
+     * @return The 20 bytes, or null if it is not such an address
+     */
+    private static byte[] parseAddress(String text) {
+        if (text.length() != 2 + 2 * ADDRESS_SIZE || !text.startsWith("0x")) {
+            return null;
+        }
+        byte[] address = new byte[ADDRESS_SIZE];
+        for (int i = 0; i < ADDRESS_SIZE; i++) {
+            int high = Character.digit(text.charAt(2 + 2 * i), 16);
+            int low = Character.digit(text.charAt(3 + 2 * i), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            address[i] = (byte) (high << 4 | low);
+        }
+        return address;
+    }
+
+    private static int freeSlot(int[] table, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int evmHash(byte[] bytes, int offset) {
+        int hash = 1;
+        for (int i = offset; i < offset + ADDRESS_SIZE; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return spread(hash);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    String getAddress(int id) {
+        return field(id, ADDRESS);
+    }
+
+    Address getEvmAddress(int id) {
+        return Address.wrap(Bytes.wrap(Arrays.copyOfRange(evmAddresses, id * ADDRESS_SIZE, (id + 1) * ADDRESS_SIZE)));
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -1,21 +1,27 @@
 package com.depchain.blockchain;
 
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects; 
 
+import org.apache.tuweni.units.bigints.UInt256;
+
 /**
  * Represents the state of an account in the blockchain
+ * The balance is a fixed-point count of units (see {@link Amounts}), held in a long and only
+ * moved to a UInt256 once it no longer fits, so transfers do not allocate.
  */
 public class AccountState {
     private final String address;                  
     private final String publicKeyPath;              
     private final String privateKeyPath;             
     private final String name;
-    private String balance;                          
+    private int id = -1;                             // Dense id in the AccountDirectory, -1 until registered
+    private long balance;                            // In units, unless bigBalance is set
+    private UInt256 bigBalance;                      // Set instead of balance while it does not fit a long
+    private long nonce;                              // Transactions executed from this account, the next one must carry it
     private String code;                             
-    private Map<String, String> storage;             
+    private ContractStorage storage;                 // Slots of a contract, as 32 byte words
+    private boolean storageShared;                   // Storage still shared with the account this one was copied from
 
     /**
      * Creates a new account state.
@@ -23,7 +29,7 @@ public class AccountState {
      * @param address        Address of the account 
      * @param publicKeyPath  Path to the public key file 
      * @param privateKeyPath Path to the private key file 
-     * @param balance        Account balance as String
+     * @param balance        Account balance in coins, as decimal text
      * @param balance        Account name
      */
     public AccountState(String address, String publicKeyPath, String privateKeyPath, String balance, String name) {
@@ -32,14 +38,16 @@ public class AccountState {
         this.privateKeyPath = privateKeyPath;
     
     
-        this.balance = (balance == null || balance.isEmpty()) ? "0" : balance;
+        setBalance((balance == null || balance.isEmpty()) ? "0" : balance);
         this.name = name; 
         this.code = null; 
-        this.storage = new HashMap<>(); 
+        this.storage = new ContractStorage(); 
     }
 
     /**
-     * Copy constructor for deep copying AccountState.
+     * Copy constructor for AccountState.
+     * The contract storage is shared with the copied account until one of them changes it
+     * (see {@link #getWritableStorage}), so copying a contract costs the same as copying any account.
     * @param other The AccountState to copy.
     */
     public AccountState(AccountState other) {
@@ -47,13 +55,17 @@ public class AccountState {
         this.address = other.address; 
         this.publicKeyPath = other.publicKeyPath; 
         this.privateKeyPath = other.privateKeyPath; 
+        this.id = other.id; 
         this.balance = other.balance; 
+        this.bigBalance = other.bigBalance; 
+        this.nonce = other.nonce; 
         this.code = other.code; 
         this.name = other.name; 
         if (other.storage != null) {
-            this.storage = new HashMap<>(other.storage);
+            this.storage = other.storage;
+            this.storageShared = true;
         } else {
-            this.storage = new HashMap<>(); 
+            this.storage = new ContractStorage(); 
         }
     }
 
@@ -73,7 +85,7 @@ public class AccountState {
         StringBuilder sb = new StringBuilder();
         sb.append("AccountState{")
           .append("address='").append(address).append('\'')
-          .append(", balance='").append(balance).append('\'');
+          .append(", balance='").append(getBalance()).append('\'');
 
         if (isContract()) {
             sb.append(", isContract=true")
@@ -107,8 +119,70 @@ public class AccountState {
         return privateKeyPath;
     }
 
+    /**
+     * Gets the balance in coins, as decimal text.
+     */
     public String getBalance() {
-        return balance;
+        return bigBalance != null ? Amounts.format(bigBalance.toBigInteger()) : Amounts.format(balance);
+    }
+
+    /**
+     * Gets the exact balance in units.
+     */
+    public BigInteger getBalanceUnits() {
+        return bigBalance != null ? bigBalance.toBigInteger() : BigInteger.valueOf(balance);
+    }
+
+    /**
+     * Checks whether the balance covers an amount.
+     *
+     * @param units The amount in units, not negative
+     */
+    public boolean hasAtLeast(long units) {
+        return bigBalance != null || balance >= units;
+    }
+
+    /**
+     * Adds an amount to the balance.
+     *
+     * @param units The amount in units, not negative
+     */
+    public void credit(long units) {
+        if (bigBalance != null) {
+            bigBalance = bigBalance.add(units);
+        } else if (balance > Long.MAX_VALUE - units) {
+            bigBalance = UInt256.valueOf(balance).add(units);
+        } else {
+            balance += units;
+        }
+    }
+
+    /**
+     * Takes an amount from the balance.
+     *
+     * @param units The amount in units, at most the balance
+     */
+    public void debit(long units) {
+        if (!hasAtLeast(units)) {
+            throw new IllegalArgumentException("Balance " + getBalance() + " does not cover " + Amounts.format(units));
+        }
+        if (bigBalance == null) {
+            balance -= units;
+            return;
+        }
+        bigBalance = bigBalance.subtract(units);
+        if (bigBalance.fitsLong()) {
+            balance = bigBalance.toLong();
+            bigBalance = null;
+        }
+    }
+
+    public long getNonce() {
+        return nonce;
+    }
+
+    public int getId() {
+        return id;
     }
 
     public String getName() {
@@ -119,38 +193,74 @@ public class AccountState {
         return code;
     }
 
-    public Map<String, String> getStorage() {
+    /**
+     * Gets the contract storage to read it. It may be shared with other copies of the account, so
+     * it must not be changed through this method.
+     */
+    public ContractStorage getStorage() {
         return storage;
     }
 
-    public String getStorageValue(String key) {
-        return storage.get(key);
+    /**
+     * Gets the contract storage to change it, copying it first if it is shared with the account
+     * this one was copied from. The account it was copied from is never changed afterwards, as
+     * world state layers and checkpoints only change their own copies.
+     */
+    ContractStorage getWritableStorage() {
+        if (storageShared) {
+            storage = new ContractStorage(storage);
+            storageShared = false;
+        }
+        return storage;
     }
    
     public void setBalance(String balance) {
-        this.balance = Objects.requireNonNull(balance, "Balance cannot be set to null");
+        Objects.requireNonNull(balance, "Balance cannot be set to null");
+        setBalanceUnits(Amounts.parseBig(balance));
     }
 
     public void setBalance(BigInteger balance) {
          Objects.requireNonNull(balance, "Balance cannot be set to null");
-         this.balance = balance.toString();
+         setBalanceUnits(balance.multiply(BigInteger.valueOf(Amounts.UNITS_PER_COIN)));
     }
 
-    public void setCode(String code) {
-        this.code = code; 
+    void setBalanceUnits(long units) {
+        this.balance = units;
+        this.bigBalance = null;
     }
 
-    public void setStorage(Map<String, String> storage) {
-        this.storage = (storage == null) ? new HashMap<>() : storage;
+    public void setBalanceUnits(BigInteger units) {
+        if (units.signum() < 0) {
+            throw new IllegalArgumentException("Balance cannot be negative: " + units);
+        }
+        if (units.bitLength() < Long.SIZE) {
+            this.balance = units.longValue();
+            this.bigBalance = null;
+        } else {
+            this.balance = 0;
+            this.bigBalance = UInt256.valueOf(units);
+        }
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    public void setNonce(long nonce) {
+        this.nonce = nonce;
+    }
+
+    public void incrementNonce() {
+        this.nonce++;
+    }
+
+    public void setCode(String code) {
+        this.code = code; 
     }
 
-    public void setStorageValue(String key, String value) {
-         Objects.requireNonNull(key, "Storage key cannot be null");
-         if (value == null) {
-             storage.remove(key);
-         } else {
-             storage.put(key, value);
-         }
+    public void setStorage(ContractStorage storage) {
+        this.storage = (storage == null) ? new ContractStorage() : storage;
+        this.storageShared = false;
     }
 
 }
\ No newline at end of file
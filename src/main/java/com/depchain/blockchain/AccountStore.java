@@ -0,0 +1,176 @@
+package com.depchain.blockchain;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.json.JSONObject;
+
+import com.depchain.utils.Logger;
+
+/**
+ * Keeps cold accounts off the heap, in a memory-mapped file of fixed-size records indexed by
+ * account id.
+ *
+ * The world state keeps the accounts changed recently on the heap, and moves the others here
+ * once no retained version can still see an older value of them (see {@link WorldState}), so heap
+ * usage follows the number of active accounts rather than the number of accounts. A record holds:
+ *   flags (1 byte) | balance (8) | nonce (8) | big balance (32), padded to 64 bytes
+ * Contracts, whose code and storage have no fixed size, always stay on the heap, and the names,
+ * addresses and key paths of the accounts stay in the {@link AccountDirectory}.
+ *
+ * The file is mapped in segments of 2^20 records, added as ids grow. It only caches the state
+ * replayed at startup, so it is emptied when opened. Records are written from the event loop and
+ * read from any thread.
+ *
+ * The store is enabled by the optional "accountStore" object of setup.json:
+ *   "accountStore": { "path": "src/main/resources/accounts.store", "cacheSize": 100000 }
+ */
+public final class AccountStore {
+    private static final int RECORD_SIZE = 64;
+    private static final int RECORDS_PER_SEGMENT = 1 << 20;
+    private static final byte PRESENT = 1;
+    private static final byte BIG = 2; // The balance is in the 32 byte field
+    private static final int FLAGS = 0;
+    private static final int BALANCE = 8;
+    private static final int NONCE = 16;
+    private static final int BIG_BALANCE = 24;
+
+    private final FileChannel channel;
+    private final int cacheSize;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    private AccountStore(FileChannel channel, int cacheSize) {
+        this.channel = channel;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Opens the store configured in a setup file.
+     *
+     * @param setupFilePath The path to setup.json
+     * @return The store, or null if none is configured or it cannot be opened
+     */
+    public static AccountStore load(String setupFilePath) {
+        try {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(Paths.get(setupFilePath))));
+            if (!json.has("accountStore")) {
+                return null;
+            }
+            JSONObject settings = json.getJSONObject("accountStore");
+            return open(Paths.get(settings.getString("path")), Math.max(1, settings.optInt("cacheSize", 100000)));
+        } catch (Exception e) {
+            Logger.log(Logger.MEMBER, "Error opening the account store, keeping every account on the heap: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens an empty store.
+     *
+     * @param path The file to map
+     * @param cacheSize How many accounts the world state keeps on the heap
+     * @return The store
+     * @throws IOException If the file cannot be opened
+     */
+    public static AccountStore open(Path path, int cacheSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new AccountStore(channel, cacheSize);
+    }
+
+    /**
+     * Writes the balance and nonce of an account into its record.
+     *
+     * @param account A registered account that is not a contract
+     */
+    void write(AccountState account) {
+        int id = account.getId();
+        MappedByteBuffer segment = segment(id, true);
+        int offset = (id % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+        BigInteger units = account.getBalanceUnits();
+        byte flags = PRESENT;
+        if (units.bitLength() < Long.SIZE) {
+            segment.putLong(offset + BALANCE, units.longValue());
+        } else {
+            flags |= BIG;
+            byte[] bytes = units.toByteArray(); // Big-endian, possibly with a leading sign byte
+            int length = Math.min(bytes.length, 32);
+            for (int i = 0; i < 32; i++) {
+                segment.put(offset + BIG_BALANCE + i, i < 32 - length ? 0 : bytes[bytes.length - 32 + i]);
+            }
+        }
+        segment.putLong(offset + NONCE, account.getNonce());
+        segment.put(offset + FLAGS, flags);
+    }
+
+    /**
+     * Reads an account from its record.
+     *
+     * @param id The id of the account
+     * @param directory The directory the id comes from, which holds the account's identity
+     * @return A new account, or null if the account has no record
+     */
+    AccountState read(int id, AccountDirectory directory) {
+        MappedByteBuffer segment = segment(id, false);
+        if (segment == null) {
+            return null;
+        }
+        int offset = (id % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+        byte flags = segment.get(offset + FLAGS);
+        if ((flags & PRESENT) == 0) {
+            return null;
+        }
+        AccountState account = directory.newAccount(id);
+        if ((flags & BIG) == 0) {
+            account.setBalanceUnits(segment.getLong(offset + BALANCE));
+        } else {
+            byte[] bytes = new byte[32];
+            for (int i = 0; i < 32; i++) {
+                bytes[i] = segment.get(offset + BIG_BALANCE + i);
+            }
+            account.setBalanceUnits(new BigInteger(1, bytes));
+        }
+        account.setNonce(segment.getLong(offset + NONCE));
+        return account;
+    }
+
+    private MappedByteBuffer segment(int id, boolean create) {
+        int index = id / RECORDS_PER_SEGMENT;
+        MappedByteBuffer[] current = segments;
+        if (index < current.length) {
+            return current[index];
+        }
+        return create ? grow(index) : null;
+    }
+
+    private synchronized MappedByteBuffer grow(int index) {
+        MappedByteBuffer[] current = segments;
+        if (index < current.length) {
+            return current[index];
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(current, index + 1);
+        try {
+            for (int i = current.length; i <= index; i++) {
+                long size = (long) RECORDS_PER_SEGMENT * RECORD_SIZE;
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * size, size);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow the account store: " + e.getMessage(), e);
+        }
+        segments = grown;
+        return grown[index];
+    }
+
+    //--- Getters and Setters ---
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+}
@@ -0,0 +1,99 @@
+package com.depchain.blockchain;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Converts amounts of the native coin between the decimal text used by clients and JSON files,
+ * and the fixed-point integers used on chain.
+ *
+ * On chain, an amount is a count of gwei, 10^9 per coin. Every amount a transaction carries fits
+ * a long, so transfers are plain integer operations; only a balance that outgrows a long switches
+ * to a UInt256 (see {@link AccountState}). Amounts are exact: text with more than 9 decimals is
+ * refused instead of rounded.
+ */
+public final class Amounts {
+    public static final int DECIMALS = 9;
+    public static final long UNITS_PER_COIN = 1_000_000_000L;
+    private static final BigInteger WEI_PER_UNIT = BigInteger.TEN.pow(18 - DECIMALS);
+
+    private Amounts() {
+    }
+
+    /**
+     * Converts a decimal amount of coins to units.
+     *
+     * @param coins The amount, for example "12.5"
+     * @return The amount in units
+     * @throws ArithmeticException If the amount has more than 9 decimals or does not fit a long
+     * @throws NumberFormatException If the text is not a number
+     */
+    public static long parse(String coins) {
+        return new BigDecimal(coins.trim()).movePointRight(DECIMALS).longValueExact();
+    }
+
+    /**
+     * Converts a decimal amount of coins to units, without the long limit.
+     *
+     * @param coins The amount, for example "12.5"
+     * @return The amount in units
+     * @throws ArithmeticException If the amount has more than 9 decimals
+     * @throws NumberFormatException If the text is not a number
+     */
+    public static BigInteger parseBig(String coins) {
+        return new BigDecimal(coins.trim()).movePointRight(DECIMALS).toBigIntegerExact();
+    }
+
+    /**
+     * Converts an amount of coins given as a double, at the edge of the client interface.
+     * The double is read through its shortest decimal form, so 0.1 gives exactly 0.1 coins.
+     *
+     * @param coins The amount
+     * @return The amount in units
+     * @throws ArithmeticException If the amount has more than 9 decimals or does not fit a long
+     */
+    public static long fromCoins(double coins) {
+        return BigDecimal.valueOf(coins).movePointRight(DECIMALS).longValueExact();
+    }
+
+    /**
+     * Converts units to a decimal amount of coins, without trailing zeros.
+     *
+     * @param units The amount in units
+     * @return The amount, for example "12.5"
+     */
+    public static String format(long units) {
+        return toCoins(units).toPlainString();
+    }
+
+    /**
+     * Converts units to a decimal amount of coins, without trailing zeros.
+     *
+     * @param units The amount in units
+     * @return The amount, for example "12.5"
+     */
+    public static String format(BigInteger units) {
+        return new BigDecimal(units, DECIMALS).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Converts units to an exact decimal amount of coins, for JSON files.
+     *
+     * @param units The amount in units
+     * @return The amount in coins
+     */
+    public static BigDecimal toCoins(long units) {
+        BigDecimal coins = BigDecimal.valueOf(units, DECIMALS).stripTrailingZeros();
+        return coins.scale() < 0 ? coins.setScale(0) : coins;
+    }
+
+    /**
+     * Converts units to wei, the 18 decimals smallest amount the EVM uses.
+     *
+     * @param units The amount in units
+     * @return The amount in wei
+     */
+    public static BigInteger toWei(long units) {
+        return BigInteger.valueOf(units).multiply(WEI_PER_UNIT);
+    }
+}
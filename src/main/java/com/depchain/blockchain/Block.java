@@ -11,6 +11,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -102,7 +103,8 @@ public class Block implements Serializable {
         for (Transaction transaction : transactions) {
             dos.writeUTF(transaction.getSender());
             dos.writeUTF(transaction.getReceiver());
-            dos.writeDouble(transaction.getAmount());
+            dos.writeLong(transaction.getAmount()); // Exact, in units
+            dos.writeLong(transaction.getNonce());
             dos.writeUTF(transaction.getData());
             dos.writeUTF(transaction.getSignature());
         }
@@ -144,11 +146,12 @@ public class Block implements Serializable {
         for (int i = 0; i < transactionCount; i++) {
             String sender = dis.readUTF();
             String receiver = dis.readUTF();
-            double amount = dis.readDouble();
+            long amount = dis.readLong();
+            long nonce = dis.readLong();
             String data = dis.readUTF();
             String signature = dis.readUTF();
             
-            Transaction transaction = new Transaction(sender, receiver, amount, data, signature);
+            Transaction transaction = new Transaction(sender, receiver, amount, data, signature, nonce);
             block.addTransaction(transaction);
         }
         
@@ -197,9 +200,11 @@ public class Block implements Serializable {
     }
 
     /**
-     * Saves the block as a JSON file in the specified directory
+     * Saves the block as a JSON file in the specified directory, with the state of the accounts
+     * its transactions touched, so the cost follows the block rather than the number of accounts.
      * 
      * @param block The block to save
+     * @param worldState The state after the block
      * @throws IOException If file writing fails
      */ 
     public static void saveBlockAsJson(Block block, WorldState worldState) throws IOException {
@@ -227,25 +232,37 @@ public class Block implements Serializable {
             ObjectNode txNode = transactionsNode.addObject();
             txNode.put("sender", tx.getSender());
             txNode.put("receiver", tx.getReceiver());
-            txNode.put("amount", tx.getAmount());
+            txNode.put("amount", Amounts.toCoins(tx.getAmount()));
+            txNode.put("nonce", tx.getNonce());
             txNode.put("data", tx.getData());
             txNode.put("signature", tx.getSignature());
         }
 
+        Map<String, AccountState> touched = new LinkedHashMap<>(); // By address, in order of first use
+        for (Transaction tx : block.getTransactions()) {
+            for (String nameOrAddress : new String[] {tx.getSender(), tx.getReceiver()}) {
+                AccountState account = worldState.getAccount(nameOrAddress);
+                if (account != null) {
+                    touched.putIfAbsent(account.getAddress(), account);
+                }
+            }
+        }
+
         ObjectNode stateNode = root.putObject("state");
-        for (Map.Entry<String, AccountState> entry : worldState.getAccounts().entrySet()) {
+        for (Map.Entry<String, AccountState> entry : touched.entrySet()) {
             String address = entry.getKey();
             AccountState account = entry.getValue();
             ObjectNode accNode = stateNode.putObject(address);
 
             accNode.put("balance", account.getBalance());
+            accNode.put("nonce", account.getNonce());
 
             if (account.isContract()) {
                 accNode.put("code", account.getCode());
                 ObjectNode storageNode = accNode.putObject("storage");
 
                 if (account.getStorage() != null) {
-                    for (Map.Entry<String, String> storageEntry : account.getStorage().entrySet()) {
+                    for (Map.Entry<String, String> storageEntry : account.getStorage().toHex().entrySet()) {
                         storageNode.put(storageEntry.getKey(), storageEntry.getValue());
                     }
                 }
@@ -0,0 +1,271 @@
+package com.depchain.blockchain;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.datatypes.Address;
+import org.hyperledger.besu.datatypes.Hash;
+import org.hyperledger.besu.evm.Code;
+import org.hyperledger.besu.evm.EVM;
+import org.hyperledger.besu.evm.MainnetEVMs;
+import org.hyperledger.besu.evm.account.Account;
+import org.hyperledger.besu.evm.account.MutableAccount;
+import org.hyperledger.besu.evm.fluent.EVMExecutor;
+import org.hyperledger.besu.evm.frame.MessageFrame;
+import org.hyperledger.besu.evm.internal.EvmConfiguration;
+import org.hyperledger.besu.evm.operation.Operation;
+import org.hyperledger.besu.evm.precompile.PrecompileContractRegistry;
+import org.hyperledger.besu.evm.tracing.OperationTracer;
+import org.hyperledger.besu.evm.tracing.StandardJsonTracer;
+import org.hyperledger.besu.evm.worldstate.WorldUpdater;
+import org.json.JSONObject;
+
+import com.depchain.utils.Logger;
+import com.depchain.utils.Metrics;
+
+/**
+ * Runs contract calls on one EVM shared by every world state.
+ *
+ * The EVM, its operations and gas schedule are built once. Contract code is parsed from hex once
+ * per distinct code and kept with its jump destination analysis, which the EVM's own cache keys
+ * by code hash. The outcome of a call, its return data and the gas it used, is read from the top
+ * frame as it exits instead of from a trace. ISTCoin calls no precompiled contract, so none are
+ * registered.
+ *
+ * Calls to ISTCoin run natively by default (see {@link ISTCoinAccelerator}), and on the EVM
+ * when the call is one the accelerator leaves to it. In verify mode every ISTCoin call runs both
+ * ways: the EVM's outcome is kept, and any call where the native one returns or writes something
+ * else is logged and counted as "native_mismatches", which checks the accelerator against the EVM
+ * on real traffic.
+ *
+ * Tracing every opcode as JSON on the standard output is a debug mode, and always runs the EVM.
+ * All three are set by the optional "evm" object of setup.json:
+ *   "evm": { "trace": false, "native": true, "verify": false }
+ */
+public final class ContractExecutor {
+    public static final long CALL_GAS = 30_000_000; // Gas a single call may use, a block's worth
+    private static final EVM EVM_INSTANCE = MainnetEVMs.cancun(EvmConfiguration.DEFAULT);
+    private static final PrecompileContractRegistry PRECOMPILES = new PrecompileContractRegistry();
+    private static final Map<String, Code> CODES = new ConcurrentHashMap<>(); // By code hex, as held by accounts
+
+    private boolean trace = false;
+    private boolean accelerate = true; // Runs ISTCoin calls natively
+    private boolean verify = false; // Checks native ISTCoin calls against the EVM
+
+    public ContractExecutor() {
+    }
+
+    /**
+     * Loads the executor settings from a setup file, with the defaults for those not configured.
+     *
+     * @param setupFilePath The path to setup.json
+     * @return The executor
+     */
+    public static ContractExecutor load(String setupFilePath) {
+        ContractExecutor executor = new ContractExecutor();
+        try {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(Paths.get(setupFilePath))));
+            if (json.has("evm")) {
+                JSONObject evm = json.getJSONObject("evm");
+                executor.trace = evm.optBoolean("trace", false);
+                executor.accelerate = evm.optBoolean("native", true);
+                executor.verify = evm.optBoolean("verify", false);
+            }
+        } catch (Exception e) {
+            Logger.log(Logger.MEMBER, "Error loading EVM settings, using the defaults: " + e.getMessage());
+        }
+        return executor;
+    }
+
+    /**
+     * Gets the parsed form of contract code.
+     *
+     * @param hex The code, as held by the contract's account
+     * @return The code, with its jump destinations analysed once
+     */
+    static Code code(String hex) {
+        return CODES.computeIfAbsent(hex, key -> {
+            Bytes bytes = Bytes.fromHexString(key);
+            return EVM_INSTANCE.getCode(Hash.hash(bytes), bytes);
+        });
+    }
+
+    /**
+     * Calls a contract in a child updater of the block's world, committed into it once the call
+     * completes. A reverted call leaves nothing behind, and neither does one that fails.
+     *
+     * @param world The world of the block
+     * @param sender The caller
+     * @param receiver The contract
+     * @param code The contract's code
+     * @param callData The call data
+     * @return The outcome of the call
+     */
+    Result call(WorldUpdater world, Address sender, Address receiver, Code code, Bytes callData) {
+        if (!accelerate || trace || !ISTCoinAccelerator.recognises(code)) {
+            return execute(world, sender, receiver, code, callData);
+        }
+        if (verify) {
+            return verify(world, sender, receiver, code, callData);
+        }
+        WorldUpdater updater = world.updater();
+        Result result = ISTCoinAccelerator.call(updater.getAccount(receiver), sender, callData);
+        if (result == null) {
+            return execute(world, sender, receiver, code, callData);
+        }
+        if (result.isSuccess()) {
+            updater.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Runs an ISTCoin call on the EVM and natively, each in its own child updater, and reports
+     * the call if they differ. Only the EVM's updater is committed.
+     */
+    private Result verify(WorldUpdater world, Address sender, Address receiver, Code code, Bytes callData) {
+        WorldUpdater evmWorld = world.updater();
+        Result expected = execute(evmWorld, sender, receiver, code, callData);
+        WorldUpdater nativeWorld = world.updater();
+        Result actual = ISTCoinAccelerator.call(nativeWorld.getAccount(receiver), sender, callData);
+        if (actual != null) {
+            Account before = world.get(receiver);
+            Map<UInt256, UInt256> expectedWrites = expected.isSuccess() ? writes(evmWorld.getAccount(receiver), before) : Map.of();
+            Map<UInt256, UInt256> actualWrites = actual.isSuccess() ? writes(nativeWorld.getAccount(receiver), before) : Map.of();
+            if (expected.isSuccess() != actual.isSuccess() || !expected.getOutput().equals(actual.getOutput())
+                    || !expectedWrites.equals(actualWrites)) {
+                Logger.log(Logger.MEMBER, "Native ISTCoin call " + callData.toHexString() + " from " + sender
+                        + " differs from the EVM: " + (actual.isSuccess() ? "returned " : "reverted ") + actual.getOutput().toHexString()
+                        + " writing " + actualWrites + ", expected " + (expected.isSuccess() ? "returned " : "reverted ")
+                        + expected.getOutput().toHexString() + " writing " + expectedWrites);
+                Metrics.increment("native_mismatches");
+            }
+        }
+        evmWorld.commit();
+        return expected;
+    }
+
+    /**
+     * Gets the slots a call changed, leaving out those written with the value they already had.
+     */
+    private static Map<UInt256, UInt256> writes(MutableAccount account, Account before) {
+        Map<UInt256, UInt256> writes = new HashMap<>();
+        account.getUpdatedStorage().forEach((key, value) -> {
+            if (!value.equals(before.getStorageValue(key))) {
+                writes.put(key, value);
+            }
+        });
+        return writes;
+    }
+
+    /**
+     * Runs a call on the EVM, committing it into the given world once it completes.
+     */
+    private Result execute(WorldUpdater world, Address sender, Address receiver, Code code, Bytes callData) {
+        Result result = new Result(trace ? new StandardJsonTracer(System.out, true, true, true) : OperationTracer.NO_TRACING);
+        EVMExecutor.evm(EVM_INSTANCE)
+                .precompileContractRegistry(PRECOMPILES)
+                .tracer(result)
+                .gas(CALL_GAS)
+                .code(code)
+                .sender(sender)
+                .receiver(receiver)
+                .callData(callData)
+                .worldUpdater(world.updater())
+                .commitWorldState()
+                .execute();
+        return result;
+    }
+
+    /**
+     * The outcome of a call, recorded as its top frame exits. Also forwards every opcode to the
+     * debug tracer, if there is one.
+     */
+    public static final class Result implements OperationTracer {
+        private static final Bytes ERROR_SELECTOR = Bytes.fromHexString("0x08c379a0"); // Error(string)
+        private static final Bytes PANIC_SELECTOR = Bytes.fromHexString("0x4e487b71"); // Panic(uint256)
+
+        private final OperationTracer debug;
+        private boolean success = false;
+        private long gasUsed = 0;
+        private Bytes output = Bytes.EMPTY;
+
+        private Result(OperationTracer debug) {
+            this.debug = debug;
+        }
+
+        /**
+         * The outcome of a call that did not run on the EVM, which used no gas.
+         *
+         * @param success true if the call returned, false if it reverted
+         * @param output The return data, or the revert data
+         */
+        Result(boolean success, Bytes output) {
+            this.debug = OperationTracer.NO_TRACING;
+            this.success = success;
+            this.output = output;
+        }
+
+        @Override
+        public void tracePreExecution(MessageFrame frame) {
+            debug.tracePreExecution(frame);
+        }
+
+        @Override
+        public void tracePostExecution(MessageFrame frame, Operation.OperationResult operationResult) {
+            debug.tracePostExecution(frame, operationResult);
+        }
+
+        @Override
+        public void traceContextExit(MessageFrame frame) {
+            debug.traceContextExit(frame);
+            if (frame.getDepth() == 0) {
+                success = frame.getState() == MessageFrame.State.COMPLETED_SUCCESS;
+                gasUsed = CALL_GAS - frame.getRemainingGas();
+                output = frame.getOutputData();
+            }
+        }
+
+        //--- Getters and Setters ---
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public long getGasUsed() {
+            return gasUsed;
+        }
+
+        public Bytes getOutput() {
+            return output;
+        }
+
+        /**
+         * Describes why the call reverted, from its revert data: the message of an Error(string),
+         * the code of a Panic(uint256), or the raw data otherwise.
+         *
+         * @return The reason, or null if the call returned
+         */
+        public String getRevertReason() {
+            if (success) {
+                return null;
+            }
+            if (output.size() >= 68 && output.slice(0, 4).equals(ERROR_SELECTOR)) {
+                UInt256 length = UInt256.fromBytes(output.slice(36, 32));
+                if (length.fitsInt() && length.intValue() <= output.size() - 68) {
+                    return "reverted: " + new String(output.slice(68, length.intValue()).toArrayUnsafe(), StandardCharsets.UTF_8);
+                }
+            }
+            if (output.size() == 36 && output.slice(0, 4).equals(PANIC_SELECTOR)) {
+                return "panic " + UInt256.fromBytes(output.slice(4, 32)).toShortHexString();
+            }
+            return output.isEmpty() ? "reverted" : "reverted with " + output.toHexString();
+        }
+    }
+}
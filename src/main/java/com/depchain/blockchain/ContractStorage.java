@@ -0,0 +1,225 @@
+package com.depchain.blockchain;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+
+/**
+ * The storage of a contract, as 32 byte words mapped to 32 byte words.
+ *
+ * Each word is held as 4 longs, most significant first, in an open-addressing table with linear
+ * probing: keys and values live in two flat long arrays, so a slot costs 64 bytes and no object,
+ * and copying the storage of a contract is two array copies. Hex text is only used at the edges,
+ * when the genesis state is read and when blocks are written to JSON; the EVM exchanges UInt256
+ * words with it directly.
+ *
+ * A slot set to zero is removed, as the EVM reads a missing slot as zero.
+ */
+public final class ContractStorage {
+    private static final int WORDS = 4; // Longs per 32 byte word
+    private static final int INITIAL_SLOTS = 16;
+
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int size = 0;
+
+    public ContractStorage() {
+        this.keys = new long[INITIAL_SLOTS * WORDS];
+        this.values = new long[INITIAL_SLOTS * WORDS];
+        this.used = new boolean[INITIAL_SLOTS];
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other The storage to copy
+     */
+    public ContractStorage(ContractStorage other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.used = other.used.clone();
+        this.size = other.size;
+    }
+
+    /**
+     * Gets the value of a slot.
+     *
+     * @param key The slot
+     * @return The value, zero if the slot was never set
+     */
+    public UInt256 get(UInt256 key) {
+        Bytes32 bytes = key.toBytes();
+        int slot = find(bytes.getLong(0), bytes.getLong(8), bytes.getLong(16), bytes.getLong(24));
+        return slot < 0 ? UInt256.ZERO : toWord(values, slot);
+    }
+
+    /**
+     * Sets the value of a slot, removing it if the value is zero.
+     *
+     * @param key The slot
+     * @param value The value
+     */
+    public void put(UInt256 key, UInt256 value) {
+        Bytes32 keyBytes = key.toBytes();
+        long k0 = keyBytes.getLong(0), k1 = keyBytes.getLong(8), k2 = keyBytes.getLong(16), k3 = keyBytes.getLong(24);
+        int slot = find(k0, k1, k2, k3);
+        if (value.isZero()) {
+            if (slot >= 0) {
+                remove(slot);
+            }
+            return;
+        }
+        if (slot < 0) {
+            if ((size + 1) * 2 > used.length) {
+                grow();
+                slot = find(k0, k1, k2, k3);
+            }
+            slot = ~slot;
+            used[slot] = true;
+            int at = slot * WORDS;
+            keys[at] = k0;
+            keys[at + 1] = k1;
+            keys[at + 2] = k2;
+            keys[at + 3] = k3;
+            size++;
+        }
+        Bytes32 valueBytes = value.toBytes();
+        int at = slot * WORDS;
+        values[at] = valueBytes.getLong(0);
+        values[at + 1] = valueBytes.getLong(8);
+        values[at + 2] = valueBytes.getLong(16);
+        values[at + 3] = valueBytes.getLong(24);
+    }
+
+    /**
+     * Sets the value of a slot from hex text, as found in JSON files.
+     *
+     * @param key The slot, with or without 0x, at most 64 digits
+     * @param value The value, with or without 0x, at most 64 digits
+     * @throws IllegalArgumentException If either is not hex or is longer than a word
+     */
+    public void putHex(String key, String value) {
+        put(UInt256.fromBytes(Bytes.fromHexStringLenient(key)), UInt256.fromBytes(Bytes.fromHexStringLenient(value)));
+    }
+
+    /**
+     * Calls an action for each slot that is set, in no particular order.
+     *
+     * @param action Called with the slot and its value
+     */
+    public void forEach(BiConsumer<UInt256, UInt256> action) {
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                action.accept(toWord(keys, slot), toWord(values, slot));
+            }
+        }
+    }
+
+    /**
+     * Gets the slots that are set as 0x-prefixed 64 digit hex text, sorted by slot, for JSON files.
+     *
+     * @return The values by slot
+     */
+    public Map<String, String> toHex() {
+        Map<String, String> hex = new TreeMap<>();
+        forEach((key, value) -> hex.put(key.toHexString(), value.toHexString()));
+        return hex;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        return toHex().toString();
+    }
+
+    /**
+     * Finds the slot holding a key.
+     *
+     * @return The slot, or the complement of the free slot where the key would go
+     */
+    private int find(long k0, long k1, long k2, long k3) {
+        int mask = used.length - 1;
+        int slot = home(k0, k1, k2, k3, mask);
+        while (used[slot]) {
+            int at = slot * WORDS;
+            if (keys[at] == k0 && keys[at + 1] == k1 && keys[at + 2] == k2 && keys[at + 3] == k3) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Frees a slot, moving back the entries after it that probed past it, so lookups never need tombstones.
+     */
+    private void remove(int slot) {
+        int mask = used.length - 1;
+        int hole = slot;
+        used[hole] = false;
+        size--;
+        for (int next = (hole + 1) & mask; used[next]; next = (next + 1) & mask) {
+            int at = next * WORDS;
+            int home = home(keys[at], keys[at + 1], keys[at + 2], keys[at + 3], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                System.arraycopy(keys, at, keys, hole * WORDS, WORDS);
+                System.arraycopy(values, at, values, hole * WORDS, WORDS);
+                used[hole] = true;
+                used[next] = false;
+                hole = next;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        used = new boolean[oldUsed.length * 2];
+        for (int slot = 0; slot < oldUsed.length; slot++) {
+            if (oldUsed[slot]) {
+                int at = slot * WORDS;
+                int free = ~find(oldKeys[at], oldKeys[at + 1], oldKeys[at + 2], oldKeys[at + 3]);
+                used[free] = true;
+                System.arraycopy(oldKeys, at, keys, free * WORDS, WORDS);
+                System.arraycopy(oldValues, at, values, free * WORDS, WORDS);
+            }
+        }
+    }
+
+    private static int home(long k0, long k1, long k2, long k3, int mask) {
+        long hash = ((k0 * 0x9E3779B97F4A7C15L + k1) * 0x9E3779B97F4A7C15L + k2) * 0x9E3779B97F4A7C15L + k3;
+        hash ^= hash >>> 29;
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 32;
+        return (int) hash & mask;
+    }
+
+    private static UInt256 toWord(long[] words, int slot) {
+        byte[] bytes = new byte[32];
+        int at = slot * WORDS;
+        for (int i = 0; i < WORDS; i++) {
+            long word = words[at + i];
+            for (int b = 0; b < 8; b++) {
+                bytes[i * 8 + b] = (byte) (word >>> (56 - 8 * b));
+            }
+        }
+        return UInt256.fromBytes(Bytes32.wrap(bytes));
+    }
+}
@@ -0,0 +1,260 @@
+package com.depchain.blockchain;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.datatypes.Address;
+import org.hyperledger.besu.datatypes.Hash;
+import org.hyperledger.besu.evm.Code;
+import org.hyperledger.besu.evm.account.MutableAccount;
+
+/**
+ * Runs the ERC-20 functions of ISTCoin natively instead of interpreting its bytecode.
+ *
+ * Only the runtime code of ISTCoin.sol as compiled into the genesis block is recognised, by its
+ * code hash, so the storage layout below is the one solc gave it:
+ *   slot 0 owner, slot 1 _blacklist, slot 2 totalSupply, slot 3 _balances, slot 4 _allowances
+ * A mapping entry lives at keccak256(key . slot), and a nested one at
+ * keccak256(inner key . keccak256(outer key . slot)). Each function checks the same requires in
+ * the same order and reverts with the same Error(string) data, reads and writes the same slots
+ * and returns the same ABI encoded words as the contract.
+ *
+ * Whatever the contract would do differently is left to the EVM: unknown selectors and the
+ * constant getters, short call data, addresses with dirty upper bytes, and a balance that would
+ * overflow. Events are not emitted and gas is not metered, as nothing reads either.
+ */
+final class ISTCoinAccelerator {
+    static final Hash CODE_HASH = Hash.fromHexString("0x4a89b44e62f3a29fd1499f0767f9d02126a963f3d384884afdc99e6692f30ecd");
+
+    private static final UInt256 OWNER_SLOT = UInt256.valueOf(0);
+    private static final UInt256 BLACKLIST_SLOT = UInt256.valueOf(1);
+    private static final UInt256 TOTAL_SUPPLY_SLOT = UInt256.valueOf(2);
+    private static final UInt256 BALANCES_SLOT = UInt256.valueOf(3);
+    private static final UInt256 ALLOWANCES_SLOT = UInt256.valueOf(4);
+
+    private static final int TRANSFER = 0xa9059cbb;
+    private static final int TRANSFER_FROM = 0x23b872dd;
+    private static final int APPROVE = 0x095ea7b3;
+    private static final int BALANCE_OF = 0x70a08231;
+    private static final int ALLOWANCE = 0xdd62ed3e;
+    private static final int TOTAL_SUPPLY = 0x18160ddd;
+    private static final int OWNER = 0x8da5cb5b;
+    private static final int IS_BLACKLISTED = 0xfe575a87;
+    private static final int BLACKLIST = 0xf9f92be4;
+    private static final int UNBLACKLIST = 0x75e3661e;
+
+    private static final Bytes ERROR_SELECTOR = Bytes.fromHexString("0x08c379a0"); // Error(string)
+    private static final UInt256 ADDRESS_MASK = UInt256.ONE.shiftLeft(160).subtract(1);
+    private static final UInt256 BOOL_MASK = UInt256.valueOf(0xff);
+    private static final Bytes TRUE = UInt256.ONE;
+
+    private ISTCoinAccelerator() {
+    }
+
+    /**
+     * Checks if contract code is the ISTCoin this class runs natively.
+     *
+     * @param code The code of the contract
+     * @return true if calls to it can run natively
+     */
+    static boolean recognises(Code code) {
+        return CODE_HASH.equals(code.getCodeHash());
+    }
+
+    /**
+     * Runs a call to ISTCoin against the storage of its account. Slots are written even if the
+     * call then reverts, as in the EVM, so the account must belong to an updater that is only
+     * committed if the call succeeds.
+     *
+     * @param token The account of the contract
+     * @param sender The caller
+     * @param callData The call data
+     * @return The outcome of the call, or null if it must run on the EVM
+     */
+    static ContractExecutor.Result call(MutableAccount token, Address sender, Bytes callData) {
+        if (callData.size() < 4) {
+            return null;
+        }
+        switch (callData.getInt(0)) {
+            case TRANSFER:
+                return transfer(token, sender, callData);
+            case TRANSFER_FROM:
+                return transferFrom(token, sender, callData);
+            case APPROVE:
+                return approve(token, sender, callData);
+            case BALANCE_OF: {
+                Address account = addressArgument(callData, 0, 1);
+                return account == null ? null : returned(token.getStorageValue(balanceSlot(account)));
+            }
+            case ALLOWANCE: {
+                Address owner = addressArgument(callData, 0, 2);
+                Address spender = addressArgument(callData, 1, 2);
+                return owner == null || spender == null ? null : returned(token.getStorageValue(allowanceSlot(owner, spender)));
+            }
+            case TOTAL_SUPPLY:
+                return returned(token.getStorageValue(TOTAL_SUPPLY_SLOT));
+            case OWNER:
+                return returned(token.getStorageValue(OWNER_SLOT).and(ADDRESS_MASK));
+            case IS_BLACKLISTED: {
+                Address account = addressArgument(callData, 0, 1);
+                return account == null ? null : returned(isBlacklisted(token, account) ? UInt256.ONE : UInt256.ZERO);
+            }
+            case BLACKLIST:
+                return setBlacklisted(token, sender, callData, true);
+            case UNBLACKLIST:
+                return setBlacklisted(token, sender, callData, false);
+            default:
+                return null;
+        }
+    }
+
+    private static ContractExecutor.Result transfer(MutableAccount token, Address sender, Bytes callData) {
+        Address to = addressArgument(callData, 0, 2);
+        if (to == null) {
+            return null;
+        }
+        UInt256 amount = UInt256.fromBytes(word(callData, 1));
+        if (isBlacklisted(token, sender) || isBlacklisted(token, to)) {
+            return reverted("Address is blacklisted");
+        }
+        if (to.equals(Address.ZERO)) {
+            return reverted("Invalid recipient");
+        }
+        if (amount.compareTo(token.getStorageValue(balanceSlot(sender))) > 0) {
+            return reverted("Insufficient balance");
+        }
+        if (!move(token, sender, to, amount)) {
+            return null;
+        }
+        return returned(TRUE);
+    }
+
+    private static ContractExecutor.Result transferFrom(MutableAccount token, Address sender, Bytes callData) {
+        Address from = addressArgument(callData, 0, 3);
+        Address to = addressArgument(callData, 1, 3);
+        if (from == null || to == null) {
+            return null;
+        }
+        UInt256 amount = UInt256.fromBytes(word(callData, 2));
+        if (isBlacklisted(token, sender) || isBlacklisted(token, from) || isBlacklisted(token, to)) {
+            return reverted("Address is blacklisted");
+        }
+        if (to.equals(Address.ZERO)) {
+            return reverted("Invalid recipient");
+        }
+        if (amount.compareTo(token.getStorageValue(balanceSlot(from))) > 0) {
+            return reverted("Insufficient balance");
+        }
+        UInt256 allowanceSlot = allowanceSlot(from, sender);
+        UInt256 allowance = token.getStorageValue(allowanceSlot);
+        if (amount.compareTo(allowance) > 0) {
+            return reverted("Allowance exceeded");
+        }
+        if (!move(token, from, to, amount)) {
+            return null;
+        }
+        token.setStorageValue(allowanceSlot, allowance.subtract(amount));
+        return returned(TRUE);
+    }
+
+    private static ContractExecutor.Result approve(MutableAccount token, Address sender, Bytes callData) {
+        Address spender = addressArgument(callData, 0, 2);
+        if (spender == null) {
+            return null;
+        }
+        UInt256 amount = UInt256.fromBytes(word(callData, 1));
+        if (isBlacklisted(token, sender) || isBlacklisted(token, spender)) {
+            return reverted("Address is blacklisted");
+        }
+        if (spender.equals(Address.ZERO)) {
+            return reverted("Invalid spender");
+        }
+        token.setStorageValue(allowanceSlot(sender, spender), amount);
+        return returned(TRUE);
+    }
+
+    private static ContractExecutor.Result setBlacklisted(MutableAccount token, Address sender, Bytes callData, boolean blacklisted) {
+        Address account = addressArgument(callData, 0, 1);
+        if (account == null) {
+            return null;
+        }
+        if (!Address.wrap(token.getStorageValue(OWNER_SLOT).toBytes().slice(12)).equals(sender)) {
+            return reverted("Only owner can call this function");
+        }
+        UInt256 slot = blacklistSlot(account);
+        UInt256 others = token.getStorageValue(slot).and(BOOL_MASK.not()); // A bool only owns the low byte of its slot
+        token.setStorageValue(slot, blacklisted ? others.or(UInt256.ONE) : others);
+        return new ContractExecutor.Result(true, Bytes.EMPTY);
+    }
+
+    /**
+     * Moves tokens the sender is known to hold, debiting first so a transfer to oneself reads the
+     * debited balance.
+     *
+     * @return false if the receiver's balance would overflow
+     */
+    private static boolean move(MutableAccount token, Address from, Address to, UInt256 amount) {
+        UInt256 fromSlot = balanceSlot(from);
+        token.setStorageValue(fromSlot, token.getStorageValue(fromSlot).subtract(amount));
+        UInt256 toSlot = balanceSlot(to);
+        UInt256 toBalance = token.getStorageValue(toSlot);
+        UInt256 sum = toBalance.add(amount);
+        if (sum.compareTo(toBalance) < 0) {
+            return false; // Solidity panics, left to the EVM
+        }
+        token.setStorageValue(toSlot, sum);
+        return true;
+    }
+
+    private static boolean isBlacklisted(MutableAccount token, Address account) {
+        return !token.getStorageValue(blacklistSlot(account)).and(BOOL_MASK).isZero();
+    }
+
+    private static UInt256 blacklistSlot(Address account) {
+        return mappingSlot(account, BLACKLIST_SLOT);
+    }
+
+    private static UInt256 balanceSlot(Address account) {
+        return mappingSlot(account, BALANCES_SLOT);
+    }
+
+    private static UInt256 allowanceSlot(Address owner, Address spender) {
+        return mappingSlot(spender, mappingSlot(owner, ALLOWANCES_SLOT));
+    }
+
+    private static UInt256 mappingSlot(Address key, UInt256 slot) {
+        return UInt256.fromBytes(Hash.hash(Bytes.concatenate(Bytes32.leftPad(key), slot)));
+    }
+
+    private static Bytes32 word(Bytes callData, int index) {
+        return Bytes32.wrap(callData, 4 + 32 * index);
+    }
+
+    /**
+     * Reads an address argument, checking the call data holds every argument of the function.
+     *
+     * @return The address, or null if the contract would revert while decoding the call data
+     */
+    private static Address addressArgument(Bytes callData, int index, int arguments) {
+        if (callData.size() < 4 + 32 * arguments) {
+            return null;
+        }
+        Bytes32 word = word(callData, index);
+        if (word.numberOfLeadingZeroBytes() < 12) {
+            return null;
+        }
+        return Address.wrap(word.slice(12));
+    }
+
+    private static ContractExecutor.Result returned(Bytes value) {
+        return new ContractExecutor.Result(true, Bytes32.leftPad(value));
+    }
+
+    private static ContractExecutor.Result reverted(String reason) {
+        Bytes message = Bytes.wrap(reason.getBytes(StandardCharsets.UTF_8));
+        Bytes padded = Bytes.concatenate(message, Bytes.wrap(new byte[(32 - message.size() % 32) % 32]));
+        return new ContractExecutor.Result(false, Bytes.concatenate(ERROR_SELECTOR, UInt256.valueOf(32), UInt256.valueOf(message.size()), padded));
+    }
+}
@@ -0,0 +1,45 @@
+package com.depchain.blockchain;
+
+/**
+ * The outcome of executing a transaction of a decided block.
+ * A transaction that fails, for example for lack of funds, leaves the world state untouched
+ * without invalidating the rest of its block.
+ */
+public class Receipt {
+    private final String transactionHash;
+    private final boolean success;
+    private final String reason; // Why the transaction failed, null on success
+
+    private Receipt(String transactionHash, boolean success, String reason) {
+        this.transactionHash = transactionHash;
+        this.success = success;
+        this.reason = reason;
+    }
+
+    public static Receipt success(Transaction transaction) {
+        return new Receipt(transaction.getHash(), true, null);
+    }
+
+    public static Receipt failed(Transaction transaction, String reason) {
+        return new Receipt(transaction.getHash(), false, reason);
+    }
+
+    @Override
+    public String toString() {
+        return transactionHash + (success ? ": success" : ": failed (" + reason + ")");
+    }
+
+    //--- Getters and Setters ---
+
+    public String getTransactionHash() {
+        return transactionHash;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,110 @@
+package com.depchain.blockchain;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.datatypes.Address;
+import org.hyperledger.besu.datatypes.Wei;
+import org.hyperledger.besu.evm.account.Account;
+import org.hyperledger.besu.evm.account.MutableAccount;
+import org.hyperledger.besu.evm.fluent.SimpleAccount;
+import org.hyperledger.besu.evm.fluent.SimpleWorld;
+
+/**
+ * The root world of the EVM for one block, backed by the accounts of a world state layer.
+ *
+ * An account is only loaded when the EVM first asks for it, and its storage is read slot by slot
+ * from the account's {@link ContractStorage}: nothing is copied in before the call. Each transaction
+ * runs in its own child updater, a plain {@link SimpleWorld}, so a reverted or failed call only
+ * discards its own writes; the child of a completed call commits the slots it wrote into the
+ * accounts loaded here, where they accumulate across the block. {@link #commit} then writes the
+ * dirty slots back into the world state once, at the end of the block, so a call costs
+ * O(slots touched). The layer's copy of a contract shares its storage with the committed account,
+ * which must stay unchanged, so a block that writes a contract copies its storage once.
+ *
+ * Until then the world state still holds the storage from before the block: only the EVM changes
+ * contract storage, and it reads through this world.
+ *
+ * As before, the EVM only changes contract storage: nonces and balances stay with the world state.
+ */
+final class StateWorldUpdater extends SimpleWorld {
+    private final WorldState state;
+    private final Map<Address, StateAccount> loaded = new HashMap<>();
+
+    StateWorldUpdater(WorldState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Account get(Address address) {
+        Account account = getAccount(address);
+        return account != null ? account : super.get(address);
+    }
+
+    @Override
+    public MutableAccount getAccount(Address address) {
+        StateAccount account = loaded.get(address);
+        if (account != null) {
+            return account;
+        }
+        AccountState source = state.peekAccount(address); // Not copied, storage only changes at commit
+        if (source == null) {
+            return super.getAccount(address); // Only accounts the EVM created itself
+        }
+        account = new StateAccount(address, source);
+        loaded.put(address, account);
+        return account;
+    }
+
+    /**
+     * Writes the slots the block changed back into the storage of their accounts, in one pass.
+     */
+    @Override
+    public void commit() {
+        for (StateAccount account : loaded.values()) {
+            account.writeBack(state);
+        }
+        loaded.clear();
+    }
+
+    /**
+     * An account of the world state as the EVM sees it. Slots written by the EVM stay in the
+     * updated storage of {@link SimpleAccount} until they are written back.
+     */
+    private static final class StateAccount extends SimpleAccount {
+        private final ContractStorage storage;
+
+        private StateAccount(Address address, AccountState source) {
+            super(null, address, 0L, Wei.ZERO, source.isContract() ? ContractExecutor.code(source.getCode()).getBytes() : Bytes.EMPTY);
+            this.storage = source.getStorage();
+        }
+
+        @Override
+        public UInt256 getStorageValue(UInt256 key) {
+            UInt256 dirty = getUpdatedStorage().get(key);
+            return dirty != null ? dirty : storage.get(key);
+        }
+
+        @Override
+        public UInt256 getOriginalStorageValue(UInt256 key) {
+            return storage.get(key);
+        }
+
+        @Override
+        public boolean isStorageEmpty() {
+            return storage.size() == 0 && getUpdatedStorage().values().stream().allMatch(UInt256::isZero);
+        }
+
+        private void writeBack(WorldState state) {
+            Map<UInt256, UInt256> dirty = getUpdatedStorage();
+            if (dirty.isEmpty()) {
+                return; // Left as it is, so the layer does not copy it
+            }
+            ContractStorage target = state.getAccount(getAddress()).getWritableStorage(); // Copied once per block at most
+            dirty.forEach(target::put);
+            dirty.clear();
+        }
+    }
+}
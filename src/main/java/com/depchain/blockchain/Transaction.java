@@ -22,23 +22,41 @@ public class Transaction implements Serializable {
     private String sender;
     private String data; // For Smart Contracts
     private String receiver;
-    private double amount;
+    private long amount; // In units, see Amounts
+    private long nonce; // Position among the sender's transactions, starting at 0
     private String signature;
+    private transient int encodedSize = -1; // Cached, not part of the serialized form
+    private transient int senderId = -1; // Account ids, resolved once against the directory below
+    private transient int receiverId = -1;
+    private transient volatile AccountDirectory directory; // Written after the ids, so reading it first is enough
     
     /**
      * Creates a new transaction with the given parameters
      * 
      * @param sender The address/ID of the sender
      * @param receiver The address/ID of the receiver
-     * @param amount The transaction amount
+     * @param amount The transaction amount, in units
      */
-    public Transaction(String sender, String receiver, double amount, String data, String signature) {
+    public Transaction(String sender, String receiver, long amount, String data, String signature) {
         this.sender = sender;
         this.receiver = receiver;
         this.amount = amount;
         this.data = data;
         this.signature = signature;
         }
+
+    /**
+     * Creates a new transaction with the given parameters
+     * 
+     * @param sender The address/ID of the sender
+     * @param receiver The address/ID of the receiver
+     * @param amount The transaction amount, in units
+     * @param nonce The number of transactions the sender sent before this one
+     */
+    public Transaction(String sender, String receiver, long amount, String data, String signature, long nonce) {
+        this(sender, receiver, amount, data, signature);
+        this.nonce = nonce;
+    }
     
     /**
      * Default constructor for deserialization
@@ -139,13 +157,30 @@ public class Transaction implements Serializable {
             return false;
         }
     }
-    
+
+    /**
+     * Verifies the signature the client attached when submitting the transaction, made with
+     * {@link #sign} over the sender, receiver, amount, nonce and data, so none of them can be
+     * changed and a signature cannot be replayed with another nonce.
+     */
+    public boolean isSignedBy(PublicKey publicKey) {
+        try {
+            if (signature == null || signature.isEmpty() || publicKey == null) {
+                return false;
+            }
+            return getDataToSign().equals(Encryption.decryptWithPublicKey(signature, publicKey));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     @Override
     public String toString() {
         return "Transaction{" +
                "sender='" + sender + '\'' +
                ", receiver='" + receiver + '\'' +
-               ", amount=" + amount +
+               ", amount=" + Amounts.format(amount) +
+               ", nonce=" + nonce +
                '}';
     }
 
@@ -167,11 +202,14 @@ public class Transaction implements Serializable {
         this.receiver = receiver;
     }
     
-    public double getAmount() {
+    /**
+     * Gets the amount in units, see {@link Amounts}.
+     */
+    public long getAmount() {
         return amount;
     }
     
-    public void setAmount(double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
@@ -187,11 +225,107 @@ public class Transaction implements Serializable {
         return signature;
     }
 
+    public long getNonce() {
+        return nonce;
+    }
+
+    public void setNonce(long nonce) {
+        this.nonce = nonce;
+    }
+
+    /**
+     * Resolves the sender and receiver to account ids, once for every execution of this transaction.
+     * 
+     * @param directory The account ids of the world state executing the transaction
+     */
+    void resolveAccounts(AccountDirectory directory) {
+        if (this.directory != directory) {
+            senderId = directory.resolve(sender);
+            receiverId = directory.resolve(receiver);
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * Gets the sender's account id, once resolved.
+     * 
+     * @return The id, or -1 if the sender has no account
+     */
+    int getSenderId() {
+        return senderId;
+    }
+
+    /**
+     * Gets the receiver's account id, once resolved.
+     * 
+     * @return The id, or -1 if the receiver has no account
+     */
+    int getReceiverId() {
+        return receiverId;
+    }
+
+    /**
+     * Calculates the hash identifying this transaction.
+     * Covers every field of the transaction, including the signature.
+     *
+     * @return The hex encoded SHA-256 hash of the transaction
+     */
+    public String getHash() {
+        String data = sender + "|" + receiver + "|" + amount + "|" + nonce + "|" + this.data + "|" + signature;
+        try {
+            java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(data.getBytes("UTF-8"));
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : digest) {
+                hexString.append(String.format("%02x", b));
+            }
+            return hexString.toString();
+        } catch (Exception e) {
+            System.err.println("Error creating hash: " + e.getMessage());
+            return "";
+        }
+    }
+
+    /**
+     * Estimates the gas this transaction needs before any code runs.
+     * Follows the Ethereum intrinsic gas: 21000 per transaction, plus 16 per non-zero
+     * and 4 per zero byte of call data.
+     *
+     * @return The intrinsic gas of the transaction
+     */
+    public long getIntrinsicGas() {
+        long gas = 21000;
+        if (data == null || data.isEmpty()) {
+            return gas;
+        }
+        String hex = data.startsWith("0x") ? data.substring(2) : data;
+        for (int i = 0; i + 1 < hex.length(); i += 2) {
+            gas += hex.charAt(i) == '0' && hex.charAt(i + 1) == '0' ? 4 : 16;
+        }
+        return gas;
+    }
+
+    /**
+     * Gets the size of this transaction once serialized.
+     *
+     * @return The size in bytes of the Base64 serialized transaction
+     */
+    public int getEncodedSize() {
+        if (encodedSize < 0) {
+            try {
+                encodedSize = serializeToString(this).length();
+            } catch (IOException e) {
+                encodedSize = 0;
+            }
+        }
+        return encodedSize;
+    }
+
     /**
-     * Calculates a hash of this transaction's data to be signed
+     * Calculates a hash of this transaction's data to be signed: every field but the signature
      */
     private String getDataToSign() {
-        String data = sender + receiver + Double.toString(amount);
+        String data = sender + "|" + receiver + "|" + amount + "|" + nonce + "|" + this.data;
         try {
             // Create a message digest using SHA-256
             java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-256");
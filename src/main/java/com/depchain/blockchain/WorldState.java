@@ -1,19 +1,16 @@
 package com.depchain.blockchain;
 
+import com.depchain.utils.KeyManager;
 import com.depchain.utils.Logger;
+import com.depchain.utils.Metrics;
+import com.depchain.utils.PersistentMap;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.io.PrintWriter;
-import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -21,29 +18,75 @@ import java.nio.file.Paths;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import org.apache.tuweni.bytes.Bytes;
-import org.apache.tuweni.units.bigints.UInt256;
 import org.apache.tuweni.units.ethereum.Gas;
 import org.hyperledger.besu.datatypes.Address;
-import org.hyperledger.besu.datatypes.Wei;
-import org.hyperledger.besu.evm.Code;
-import org.hyperledger.besu.evm.EVM;
-import org.hyperledger.besu.evm.EvmSpecVersion;
-import org.hyperledger.besu.evm.account.MutableAccount;
-import org.hyperledger.besu.evm.fluent.EVMExecutor;
-import org.hyperledger.besu.evm.fluent.SimpleWorld;
-import org.hyperledger.besu.evm.tracing.StandardJsonTracer;
 
+/**
+ * The accounts and contract state of the blockchain.
+ *
+ * A world state can be layered: {@link #overlay} creates a writable layer on top of a state that
+ * stays untouched. A layer holds only the accounts it accessed, copied from below on first access,
+ * so executing a block on it costs O(touched accounts) whatever the size of the state underneath.
+ * {@link #commit} writes the layer into the bottom state.
+ *
+ * Accounts are held in a {@link PersistentMap}, so every version of the account map stays valid
+ * while newer ones are built. The bottom state is only changed by committing layers, which put
+ * fresh account objects in a new version, so the accounts it hands out are never modified in place:
+ * {@link #getAccounts} returns a consistent snapshot for the cost of a pointer copy, which readers
+ * can use without locks while blocks are applied. Within a layer, {@link #checkpoint} keeps the
+ * current version and copies each account again on its first access, so {@link #revert} only
+ * restores the kept version and {@link #release} drops it.
+ *
+ * Each commit into the bottom state publishes its new version under the next block height, by
+ * writing one volatile reference. {@link #snapshot()} and {@link #snapshot(long)} give a read-only
+ * state at the latest or at a given height, so balance queries from any thread neither lock nor
+ * wait for blocks being applied. The last {@value #RETAINED_VERSIONS} heights are kept.
+ *
+ * Accounts are keyed by the dense ids of an {@link AccountDirectory}, so the account map is in
+ * effect an array mapped trie indexed by id. A transaction resolves its sender and receiver to ids
+ * once, and execution then only looks accounts up by id.
+ *
+ * With an {@link AccountStore}, the bottom state only keeps the accounts changed recently on the
+ * heap, at most the store's cache size when possible. An account whose last change is older than
+ * every retained version is written to the store and dropped from the next version: no retained
+ * version can see an older value of it, so reading it from the store is consistent. Readers of
+ * the bottom state and snapshots get cold accounts rebuilt from the store, layers copy them in.
+ */
 public class WorldState {
-    private Map<String, AccountState> accounts;
-    private Map<String, String> nameAddress; // Map to store address and name pairs
+    private static final int RETAINED_VERSIONS = 128;
+
+    private volatile PersistentMap<Integer, AccountState> accounts = PersistentMap.empty(); // By id, only the accessed ones in a layer
+    private final AccountDirectory directory; // Account ids by name and address, shared by every layer
+    private final WorldState base; // The state this layer sits on, null for the bottom state
+    private final Deque<Checkpoint> checkpoints = new ArrayDeque<>();
+    private final ConcurrentSkipListMap<Long, PersistentMap<Integer, AccountState>> versions; // By block height, bottom state only
+    private volatile long height = 0; // Blocks committed into the bottom state since genesis
+    private final boolean readOnly; // A snapshot
+    private AccountStore store; // Cold accounts, null to keep every account on the heap
+    private ContractExecutor executor; // Runs contract calls, null in snapshots
+    private StateWorldUpdater blockWorld; // EVM world of the block being applied, committed once at its end
+    private final LinkedHashMap<Integer, Long> lastChanged = new LinkedHashMap<>(); // Height by account id, least recent first, bottom state only
     private static final String GENESIS_BLOCK_PATH = "src/main/resources/genesisBlock.json"; // Path to the genesis
                                                                                              // block file
     private static final String ACCOUNTS_FILE_PATH = "src/main/resources/accounts.json"; // File that contains the
@@ -51,19 +94,224 @@ public class WorldState {
                                                                                          // to their keys
     private static final String KEYS_DIRECTORY = "src/main/resources/generated_keys"; // Directory to store generated
                                                                                       // keys
-    private SimpleWorld evmWorld;
+    private static final Map<String, PublicKey> publicKeys = new ConcurrentHashMap<>(); // By key file path, shared by every copy
 
     public WorldState() {
-        this.accounts = new HashMap<>();
-        this.nameAddress = new HashMap<>();
-        this.evmWorld = new SimpleWorld();
+        this.directory = new AccountDirectory();
+        this.executor = new ContractExecutor();
+        this.base = null;
+        this.versions = new ConcurrentSkipListMap<>();
+        this.readOnly = false;
+        versions.put(height, accounts);
+    }
+
+    private WorldState(WorldState base) {
+        this.directory = base.directory;
+        this.base = base;
+        this.versions = null;
+        this.readOnly = false;
+        this.store = base.store;
+        this.executor = base.executor;
+    }
+
+    private WorldState(AccountDirectory directory, AccountStore store, PersistentMap<Integer, AccountState> accounts, long height) {
+        this.directory = directory;
+        this.base = null;
+        this.versions = null;
+        this.readOnly = true;
+        this.store = store;
+        this.accounts = accounts;
+        this.height = height;
+    }
+
+    /**
+     * Sets how contract calls run, for example to trace them.
+     * 
+     * @param executor The executor
+     */
+    public void useContractExecutor(ContractExecutor executor) {
+        checkWritable();
+        if (base != null) {
+            throw new IllegalStateException("The contract executor must be set on the bottom state");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Moves cold accounts off the heap into a store. Must be called before any account is added.
+     * 
+     * @param store The store
+     */
+    public void useAccountStore(AccountStore store) {
+        checkWritable();
+        if (base != null || directory.size() > 0) {
+            throw new IllegalStateException("The account store must be set on an empty bottom state");
+        }
+        this.store = store;
+    }
+
+    /**
+     * Gets a read-only snapshot of the latest committed state, without locking.
+     * 
+     * @return The snapshot
+     */
+    public WorldState snapshot() {
+        if (versions == null) {
+            return new WorldState(directory, store, version(), height);
+        }
+        long at = height;
+        PersistentMap<Integer, AccountState> version = versions.get(at); // Published before the height moved
+        return new WorldState(directory, store, version == null ? accounts : version, at);
+    }
+
+    /**
+     * Gets a read-only snapshot of the state committed at a block height, without locking.
+     * A member that has not reached the height yet gets its latest state.
+     * 
+     * @param height The block height, 0 for genesis
+     * @return The snapshot, or null if the height is no longer retained
+     */
+    public WorldState snapshot(long height) {
+        if (versions == null) {
+            return base == null ? this : base.snapshot(height);
+        }
+        Map.Entry<Long, PersistentMap<Integer, AccountState>> version = versions.floorEntry(height);
+        return version == null ? null : new WorldState(directory, store, version.getValue(), version.getKey());
+    }
+
+    /**
+     * Creates a writable layer on top of this state, which the layer never modifies.
+     * 
+     * @return The new layer
+     */
+    public WorldState overlay() {
+        return new WorldState(this);
+    }
+
+    /**
+     * Writes this layer into the bottom state, in O(touched accounts), and empties it.
+     * The layer stays usable, it then reads through to the bottom state.
+     * Layers in between must have been committed first.
+     */
+    public void commit() {
+        if (base == null) {
+            return;
+        }
+        WorldState bottom = base;
+        while (bottom.base != null) {
+            if (!bottom.accounts.isEmpty()) {
+                throw new IllegalStateException("Committing a layer on top of an uncommitted one");
+            }
+            bottom = bottom.base;
+        }
+        bottom.checkWritable();
+        bottom.publish(bottom.accounts.withAll(accounts), accounts.keySet());
+        accounts = PersistentMap.empty();
+    }
+
+    /**
+     * Makes a version of the bottom state the latest one, at the next block height.
+     * Readers switch to it atomically, older versions stay readable until they are trimmed.
+     * 
+     * @param version The new version
+     * @param changed The ids of the accounts it changed
+     */
+    private void publish(PersistentMap<Integer, AccountState> version, Set<Integer> changed) {
+        long next = height + 1;
+        for (Integer id : changed) {
+            lastChanged.remove(id); // Moves it to the most recent end
+            lastChanged.put(id, next);
+        }
+        if (store != null) {
+            version = evictCold(version, next - RETAINED_VERSIONS + 1);
+        }
+        versions.put(next, version);
+        accounts = version;
+        height = next;
+        versions.headMap(next - RETAINED_VERSIONS, true).clear();
+    }
+
+    /**
+     * Writes the least recently changed accounts to the store, while the version holds more than
+     * the cache size and no retained version can see an older value of them.
+     * 
+     * @param version The version about to be published
+     * @param oldestRetained The oldest height still retained once it is published
+     * @return The version without the evicted accounts
+     */
+    private PersistentMap<Integer, AccountState> evictCold(PersistentMap<Integer, AccountState> version, long oldestRetained) {
+        Iterator<Map.Entry<Integer, Long>> leastRecent = lastChanged.entrySet().iterator();
+        while (version.size() > store.getCacheSize() && leastRecent.hasNext()) {
+            Map.Entry<Integer, Long> entry = leastRecent.next();
+            if (entry.getValue() > oldestRetained) {
+                break; // Every account after it changed even later
+            }
+            leastRecent.remove();
+            AccountState account = version.get(entry.getKey());
+            if (account != null && !account.isContract()) {
+                store.write(account);
+                version = version.without(entry.getKey());
+                Metrics.increment("accounts_evicted");
+            }
+        }
+        return version;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("A world state snapshot is read-only");
+        }
+    }
+
+    /**
+     * Keeps the current version of the accounts, which costs a pointer copy.
+     */
+    public void checkpoint() {
+        checkpoints.push(new Checkpoint(accounts));
+    }
+
+    /**
+     * Goes back to the version kept by the last checkpoint, and ends it.
+     */
+    public void revert() {
+        accounts = checkpoints.pop().accounts;
+    }
+
+    /**
+     * Keeps the changes made since the last checkpoint, and ends it.
+     */
+    public void release() {
+        Checkpoint released = checkpoints.pop();
+        if (!checkpoints.isEmpty()) {
+            checkpoints.peek().copied.or(released.copied); // Their copies are not in the outer version either
+        }
+    }
+
+    /**
+     * A version of the accounts to go back to, and the accounts copied since it was kept.
+     */
+    private static final class Checkpoint {
+        private final PersistentMap<Integer, AccountState> accounts;
+        private final BitSet copied = new BitSet(); // By account id
+
+        private Checkpoint(PersistentMap<Integer, AccountState> accounts) {
+            this.accounts = accounts;
+        }
     }
 
     public void addAccount(AccountState accountState) {
         System.out.println("Adding account: " + accountState.getName());
-        nameAddress.put(accountState.getName(), accountState.getAddress());
-        accounts.put(accountState.getAddress(), accountState);
-        evmWorld.createAccount(Address.fromHexString(accountState.getAddress()), 0L, Wei.ZERO);
+        checkWritable();
+        int id = directory.register(accountState);
+        if (store != null && accounts.size() >= store.getCacheSize() && !accountState.isContract()) {
+            store.write(accountState);
+            return;
+        }
+        accounts = accounts.with(id, accountState);
+        lastChanged.put(id, height);
+        if (versions != null) {
+            versions.put(height, accounts); // Part of the current version, like the genesis accounts
+        }
     }
 
     /**
@@ -118,6 +366,9 @@ public class WorldState {
                     accountInfo.privateKeyPath,
                     balance,
                     accountInfo.name);
+            if (accountData.has("nonce")) {
+                accountState.setNonce(accountData.get("nonce").asLong());
+            }
 
             // Add contract-specific data if present
             if (accountData.has("code")) {
@@ -125,7 +376,7 @@ public class WorldState {
 
                 if (accountData.has("storage") && accountData.get("storage").isObject()) {
                     JsonNode storageNode = accountData.get("storage");
-                    Map<String, String> storage = new HashMap<>();
+                    ContractStorage storage = new ContractStorage(); // Hex is only parsed here
 
                     Iterator<Map.Entry<String, JsonNode>> storageFields = storageNode.fields();
                     while (storageFields.hasNext()) {
@@ -136,7 +387,7 @@ public class WorldState {
                                 + address + "], Key=[" + key + "], Value=[" + value + "]"); // Added contract address
                                                                                             // for clarity
 
-                        storage.put(storageEntry.getKey(), storageEntry.getValue().asText());
+                        storage.putHex(key, value);
                     }
 
                     accountState.setStorage(storage);
@@ -208,66 +459,80 @@ public class WorldState {
     }
 
     /**
-     * Creates a deep copy of the given worldstate object.
+     * Checks whether a transaction can execute by checking the receiver's existence, that its
+     * nonce was not used yet, and the sender's balance, net of what the sender's pending
+     * transactions already spend.
      * 
-     * @param originalState The original worldstate to be copied.
-     * @return A new worldstate instance that is a deep copy of the original.
-     */
-    public static WorldState deepCopy(WorldState originalState) {
-        WorldState copy = new WorldState();
-
-        for (Map.Entry<String, AccountState> entry : originalState.getAccounts().entrySet()) {
-            AccountState original = entry.getValue();
-            AccountState cloned = new AccountState(
-                    original.getAddress(),
-                    original.getPublicKeyPath(),
-                    original.getPrivateKeyPath(),
-                    original.getBalance(),
-                    original.getName());
-
-            cloned.setCode(original.getCode());
-
-            if (original.getStorage() != null) {
-                Map<String, String> storageCopy = new HashMap<>(original.getStorage());
-                cloned.setStorage(storageCopy);
-            }
+     * @param tx           The transaction to verify
+     * @param state        The world state to check against
+     * @param pendingSpend The amount in units the sender's earlier transactions will spend first
+     * @return null if the transaction can execute, otherwise why it cannot
+     */
+    private String validate(Transaction tx, WorldState state, long pendingSpend) {
+        tx.resolveAccounts(directory);
+        AccountState sender = state.getAccount(tx.getSenderId());
+        AccountState receiver = state.getAccount(tx.getReceiverId());
 
-            copy.addAccount(cloned);
+        if (sender == null) {
+            return "unknown sender " + tx.getSender();
+        }
+        if (receiver == null) {
+            return "unknown receiver " + tx.getReceiver();
+        }
+        if (tx.getNonce() < sender.getNonce()) {
+            return "nonce " + tx.getNonce() + " already used, next is " + sender.getNonce();
+        }
+        if (tx.getAmount() <= 0) {
+            return "invalid amount " + Amounts.format(tx.getAmount());
         }
 
-        return copy;
+        long needed = pendingSpend > Long.MAX_VALUE - tx.getAmount() ? Long.MAX_VALUE : pendingSpend + tx.getAmount();
+        if (!sender.hasAtLeast(needed)) {
+            return "insufficient funds";
+        }
+        return null;
     }
 
     /**
-     * Verifies if a transaction is valid by checking the sender's balance and the
-     * receiver's existence.
+     * Checks whether a transaction can be admitted into the mempool.
+     * Its nonce must directly follow the sender's pending transactions, so they never leave a gap.
      * 
-     * @param tx    The transaction to verify
-     * @param state The world state to check against
-     * @return true if the transaction is valid, false otherwise
-     */
-    private boolean isTransactionValid(Transaction tx, WorldState state) {
-        System.out.println("Verifying transaction: " + tx);
-        System.out.println("Verifying transaction: " + tx);
-        System.out.println("Sender: " + tx.getSender() + ", Receiver: " + tx.getReceiver());
-        System.out.println(
-                "state.getAccount(tx.getSender().toString()) = " + state.getAccount(tx.getSender().toString()));
-        AccountState sender = state.getAccount(tx.getSender().toString());
-        AccountState receiver = state.getAccount(tx.getReceiver().toString());
-        System.out.println("Sender: " + sender + ", Receiver: " + receiver);
-
-        if (sender == null || receiver == null) {
-            System.out.println("Sender or receiver null");
-            return false;
+     * @param tx           The received transaction
+     * @param pendingSpend The amount in units the sender's pending transactions already spend
+     * @param pendingCount The number of the sender's pending transactions
+     * @return null if the transaction is admitted, otherwise why it is rejected
+     */
+    public String checkAdmission(Transaction tx, long pendingSpend, int pendingCount) {
+        String reason = validate(tx, this, pendingSpend);
+        if (reason != null) {
+            return reason;
+        }
+        long expected = getAccount(tx.getSenderId()).getNonce() + pendingCount;
+        if (tx.getNonce() != expected) {
+            return "nonce " + tx.getNonce() + " out of order, expected " + expected;
         }
+        return null;
+    }
 
-        try {
-            double balance = new java.math.BigDecimal(sender.getBalance()).doubleValue();
-            return balance >= tx.getAmount();
-        } catch (Exception e) {
-            System.out.println("Error checking balance: " + e.getMessage());
-            return false;
+    /**
+     * Gets the public key of an account, loading it once from its key file.
+     * 
+     * @param name The name of the account
+     * @return The public key, or null if the account or its key is unknown
+     */
+    public PublicKey getPublicKey(String name) {
+        AccountState account = getAccount(name);
+        if (account == null || account.getPublicKeyPath() == null) {
+            return null;
         }
+        return publicKeys.computeIfAbsent(account.getPublicKeyPath(), path -> {
+            try {
+                return KeyManager.loadPublicKeyFromFile(path);
+            } catch (Exception e) {
+                Logger.log(Logger.MEMBER, "Error loading public key " + path + ": " + e.getMessage());
+                return null;
+            }
+        });
     }
 
     /**
@@ -275,190 +540,160 @@ public class WorldState {
      * 
      * @param tx    The transaction to apply
      * @param state The world state to apply the transaction to
+     * @return null if it applied, otherwise why it failed
      */
-    private void applyTransaction(Transaction tx, WorldState state) {
-        AccountState sender = state.getAccount(tx.getSender());
-        AccountState receiver = state.getAccount(tx.getReceiver());
+    private String applyTransaction(Transaction tx, WorldState state) {
+        AccountState sender = state.getAccount(tx.getSenderId());
+        AccountState receiver = state.getAccount(tx.getReceiverId());
 
         if (sender == null || receiver == null) {
-            System.err.println("Sender or receiver does not exist.");
-            return;
+            return "sender or receiver does not exist";
         }
 
         if (receiver.isContract()) {
-            handleSmartContractTransaction(tx, sender, receiver, state);
-        } else {
-            handleRegularTransfer(tx, sender, receiver);
+            return handleSmartContractTransaction(tx, sender, receiver, state);
         }
+        handleRegularTransfer(tx, sender, receiver);
+        return null;
     }
 
-    
-    private void handleSmartContractTransaction(Transaction tx, AccountState sender, AccountState receiver, WorldState state) {
-        /*Not implemented*/
-        System.out.println("⚙️ Executing smart contract at: " + receiver.getAddress());
-
+    /**
+     * Calls a contract in the block's EVM world. A call that reverts or cannot run changes nothing.
+     * 
+     * @param tx       The transaction to apply
+     * @param sender   The sender's account state
+     * @param receiver The contract's account state
+     * @param state    The world state to apply the transaction to
+     * @return null if the call returned, otherwise why it failed
+     */
+    private String handleSmartContractTransaction(Transaction tx, AccountState sender, AccountState receiver, WorldState state) {
         try {
-            SimpleWorld simpleWorld = state.getEvmWorld(); // shared evmWorld
-
-            Address receiverAddr = Address.fromHexString(receiver.getAddress());
-            Address senderAddr = Address.fromHexString(sender.getAddress());
-
-            MutableAccount receiverAcc = (MutableAccount) simpleWorld.get(receiverAddr);
-            receiverAcc.setCode(Bytes.fromHexString(receiver.getCode()));
-            syncStorageToEVM(receiver, receiverAcc);
-
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            PrintStream printStream = new PrintStream(byteArrayOutputStream);
-            StandardJsonTracer tracer = new StandardJsonTracer(printStream, true, true, true);
-
-            EVM evmInstance = new EVM(null, null, null, EvmSpecVersion.CANCUN);
-            var executor = EVMExecutor.evm(evmInstance)
-                    .tracer(tracer)
-                    .code((Code) Bytes.fromHexString(state.getAccount(receiver.getAddress()).getCode()))
-                    .sender(senderAddr)
-                    .receiver(receiverAddr)
-                    .worldUpdater(simpleWorld.updater())
-                    .commitWorldState();
-
-            executor.callData(Bytes.fromHexString(tx.getData()));
-            executor.execute();
-            int count = extractIntegerFromReturnData(byteArrayOutputStream);
-            System.out.println("Output of 'transfer()):' " + Integer.toString(count));
-
-            syncStorageFromEVM(receiver, receiverAcc);
+            Address receiverAddr = directory.getEvmAddress(receiver.getId()); // Parsed once, when registered
+            Address senderAddr = directory.getEvmAddress(sender.getId());
 
+            ContractExecutor.Result result = executor.call(state.blockWorld, senderAddr, receiverAddr,
+                    ContractExecutor.code(receiver.getCode()), Bytes.fromHexString(tx.getData()));
+            return result.getRevertReason();
         } catch (Exception e) {
-            System.err.println("Error during EVM contract execution: " + e.getMessage());
-            e.printStackTrace();
+            return "contract execution error: " + e.getMessage();
         }
     }
 
     /**
-     * Handles a regular transfer between two accounts.
+     * Handles a regular transfer between two accounts, with integer arithmetic on their balances.
      * 
      * @param tx       The transaction to apply
      * @param sender   The sender's account state
      * @param receiver The receiver's account state
      */
     private void handleRegularTransfer(Transaction tx, AccountState sender, AccountState receiver) {
-        BigDecimal value = BigDecimal.valueOf(tx.getAmount());
-        BigDecimal senderBalance = new BigDecimal(sender.getBalance());
-        BigDecimal receiverBalance = new BigDecimal(receiver.getBalance());
-
-        if (senderBalance.compareTo(value) < 0) {
+        long value = tx.getAmount();
+        if (!sender.hasAtLeast(value)) {
             System.err.println("Insufficient funds for sender.");
             return;
         }
 
-        sender.setBalance(senderBalance.subtract(value).toString());
-        receiver.setBalance(receiverBalance.add(value).toString());
+        sender.debit(value);
+        receiver.credit(value);
     }
 
     /**
-     * Synchronizes the storage of a contract to the EVM.
+     * Verifies that every transaction in a block was signed by its sender.
+     * Only a faulty leader proposes a forged transaction, so it invalidates the whole block.
+     * Transactions that cannot execute, for lack of funds or an unknown account, do not:
+     * they fail with a receipt when the block is applied.
      * 
-     * @param receiver The contract account state
-     * @param evmAcc   The mutable account in the EVM
+     * @param block The block to verify
+     * @return true if no transaction is forged, false otherwise
      */
-    private void syncStorageToEVM(AccountState receiver, MutableAccount evmAcc) {
-        if (receiver.getStorage() == null) {
-            return;
+    public boolean areAllTransactionsSigned(Block block) {
+        for (Transaction tx : block.getTransactions()) {
+            PublicKey publicKey = getPublicKey(String.valueOf(tx.getSender()));
+            if (publicKey != null && !tx.isSignedBy(publicKey)) {
+                Logger.log(Logger.MEMBER, "Forged transaction in block: " + tx.getHash());
+                return false;
+            }
         }
-        receiver.getStorage().forEach((key, value) -> {
+        return true;
+    }
 
-            if (key == null || value == null) {
-                return; 
+    /**
+     * Applies all transactions in a block to the world state.
+     * A transaction that cannot execute is skipped and gets a failed receipt.
+     * A transaction only executes with the sender's next nonce, which it then uses up even if it
+     * fails, so a replayed or reordered transaction never executes.
+     * On the bottom state the block runs in a layer committed at the end, so snapshots taken
+     * meanwhile never see it half applied. Contract calls share one EVM world for the block, whose
+     * storage writes reach the layer once, after the last transaction.
+     * 
+     * @param block The block containing transactions to apply
+     * @return The receipt of each transaction, in block order
+     */
+    public List<Receipt> applyBlock(Block block) {
+        checkWritable();
+        if (base == null) {
+            WorldState layer = overlay();
+            List<Receipt> receipts = layer.applyBlock(block);
+            layer.commit();
+            return receipts;
+        }
+        List<Receipt> receipts = new ArrayList<>();
+        blockWorld = new StateWorldUpdater(this); // Loads accounts and slots as the EVM reads them
+        for (Transaction tx : block.getTransactions()) {
+            checkpoint();
+            String reason;
+            try {
+                reason = executeTransaction(tx);
+                release();
+            } catch (RuntimeException e) {
+                revert(); // Undoes whatever the transaction changed before failing
+                reason = "execution error: " + e.getMessage();
             }
-            boolean startsWith0x = value.toLowerCase().startsWith("0x");
-
-            if (startsWith0x) {
-                String rawValue = value.substring(2);
-                int rawLength = rawValue.length();
-                if (!rawValue.matches("^[0-9a-fA-F]*$")) {
-                }
+            if (reason == null) {
+                receipts.add(Receipt.success(tx));
             } else {
-                int valueLength = value.length();
-
-                if (!value.matches("^[0-9a-fA-F]*$")) {
-                }
+                Logger.log(Logger.MEMBER, "Transaction " + tx.getHash() + " failed: " + reason);
+                receipts.add(Receipt.failed(tx, reason));
             }
 
-            try {
-                if (key.substring(2).length() % 2 != 0) {
-                }
-                String hexValue = value.startsWith("0x") ? value.substring(2) : value;
-                if (hexValue.length() % 2 != 0) {
-                    hexValue = "0" + hexValue;
-                }
-                Bytes valueBytes = Bytes.fromHexString("0x" + hexValue);
-                String hexKey = key.startsWith("0x") ? key.substring(2) : key;
-                if (hexKey.length() % 2 != 0) {
-                    hexKey = "0" + hexKey;
-                }
-                Bytes keyBytes = Bytes.fromHexString("0x" + hexKey);
-
-
-                evmAcc.setStorageValue(
-                        UInt256.fromBytes(keyBytes),
-                        UInt256.fromBytes(valueBytes));
-            } catch (IllegalArgumentException e) {
-                e.printStackTrace();
-                throw e;
-            } catch (Exception e) {
-                System.err.println(
-                        "Unexpected error processing storage! Key: [" + key + "], Value: [" + value + "]");
-                e.printStackTrace();
-                throw e;
+            AccountState sender = getAccount(tx.getSenderId());
+            if (sender != null && tx.getNonce() == sender.getNonce()) {
+                sender.incrementNonce();
             }
-        });
-        System.out.println("Finished syncing storage for contract: " + receiver.getAddress());
-    }
-
-    /**
-     * Synchronizes the storage of a contract from the EVM to the world state.
-     * 
-     * @param receiver The contract account state
-     * @param evmAcc   The mutable account in the EVM
-     */
-    private void syncStorageFromEVM(AccountState receiver, MutableAccount evmAcc) {
-        receiver.getStorage().clear();
-        evmAcc.getUpdatedStorage().forEach((key, value) -> {
-            receiver.setStorageValue(
-                    key.toUnprefixedHexString(),
-                    value.toUnprefixedHexString());
-        });
+        }
+        blockWorld.commit();
+        blockWorld = null;
+        return receipts;
     }
 
     /**
-     * Verifies if all transactions in a block are valid.
+     * Executes a transaction if it carries the sender's next nonce and can execute.
      * 
-     * @param block The block to verify
-     * @return true if all transactions are valid, false otherwise
+     * @param tx The transaction to execute
+     * @return null if it executed, otherwise why it did not
      */
-    public boolean areAllTransactionsValid(Block block) {
-        System.out.println("Verifying transactions in block");
-        WorldState copyWorldState = WorldState.deepCopy(this); // cópia profunda do estado atual da worldstate
-
-        for (Transaction tx : block.getTransactions()) {
-            if (!isTransactionValid(tx, copyWorldState)) {
-                return false;
-            }
-            applyTransaction(tx, copyWorldState); // aplica a transação à cópia para atualizar o estado
+    private String executeTransaction(Transaction tx) {
+        tx.resolveAccounts(directory);
+        AccountState sender = getAccount(tx.getSenderId());
+        if (sender != null && tx.getNonce() > sender.getNonce()) {
+            return "nonce " + tx.getNonce() + " ahead of " + sender.getNonce();
         }
-
-        System.out.println("All transactions are valid :)");
-        return true;
+        String reason = validate(tx, this, 0);
+        if (reason != null) {
+            return reason;
+        }
+        return applyTransaction(tx, this);
     }
 
     /**
-     * Applies all transactions in a block to the world state.
+     * Describes the state in one line, in constant time, unlike {@link #toString()} which sorts
+     * every account.
      * 
-     * @param block The block containing transactions to apply
+     * @return The height and the number of accounts
      */
-    public void applyBlock(Block block) {
-        for (Transaction tx : block.getTransactions()) {
-            applyTransaction(tx, this);
-        }
+    public String summary() {
+        return "WorldState at height " + getHeight() + ": " + directory.size() + " accounts, "
+                + accounts.size() + " on the heap" + (base == null ? "" : " in this layer");
     }
 
     public String toString() {
@@ -466,7 +701,7 @@ public class WorldState {
         sb.append("WorldState:\n");
 
         // Sort accounts by name
-        accounts.values().stream()
+        getAccounts().values().stream()
                 .sorted((a1, a2) -> a1.getName().compareTo(a2.getName()))
                 .forEach(account -> {
                     sb.append("  ").append(account.getName())
@@ -479,31 +714,178 @@ public class WorldState {
 
     // --- Getters and Setters ---
 
-    private SimpleWorld getEvmWorld() {
-        return evmWorld;
+    /**
+     * Gets the block height of the latest version committed into the bottom state.
+     */
+    public long getHeight() {
+        return base == null ? height : base.getHeight();
     }
 
+    /**
+     * Gets every account by address, as an immutable version of the account map that later changes
+     * do not affect. For the bottom state this is a pointer copy. For a layer it is the version below
+     * with the layer's accounts added, in O(touched accounts), whose accounts still change as the
+     * layer executes.
+     */
     public Map<String, AccountState> getAccounts() {
-        return accounts;
+        return new AddressView(directory, store, version());
+    }
+
+    private PersistentMap<Integer, AccountState> version() {
+        return base == null ? accounts : base.version().withAll(accounts);
+    }
+
+    /**
+     * Gets an account to read or change it.
+     * 
+     * @param nameOrAddress The name or the address of the account
+     * @return The account, or null if there is none
+     */
+    public AccountState getAccount(String nameOrAddress) {
+        return getAccount(directory.resolve(nameOrAddress));
+    }
+
+    /**
+     * Gets an account by the address the EVM uses for it, to read it only: a layer does not copy it.
+     * 
+     * @param address The EVM address
+     * @return The account, or null if there is none
+     */
+    AccountState peekAccount(Address address) {
+        int id = directory.resolve(address);
+        return id < 0 ? null : lookup(id);
+    }
+
+    /**
+     * Gets an account by the address the EVM uses for it, to read or change it.
+     * 
+     * @param address The EVM address
+     * @return The account, or null if there is none
+     */
+    AccountState getAccount(Address address) {
+        return getAccount(directory.resolve(address));
+    }
+
+    /**
+     * Gets an account by id to read or change it.
+     * A layer copies the account from below on first access, and again on its first access after
+     * a checkpoint, so the version the checkpoint kept is never modified.
+     */
+    private AccountState getAccount(int id) {
+        if (id < 0) {
+            return null;
+        }
+        PersistentMap<Integer, AccountState> current = accounts;
+        AccountState account = current.get(id);
+        if (account == null && base == null) {
+            return store == null ? null : store.read(id, directory); // Cold, rebuilt for reading only
+        }
+        Checkpoint checkpoint = checkpoints.peek();
+        if (account == null || checkpoint != null && !checkpoint.copied.get(id)) {
+            AccountState source = account != null || base == null ? account : base.lookup(id);
+            if (source != null) {
+                account = new AccountState(source);
+                accounts = current.with(id, account);
+                if (checkpoint != null) {
+                    checkpoint.copied.set(id);
+                }
+            }
+        }
+        return account;
     }
 
-    public AccountState getAccount(String name) {
-        String address = nameAddress.get(name);
-        return accounts.get(address);
+    /**
+     * Finds an account without copying it into this layer.
+     */
+    private AccountState lookup(int id) {
+        AccountState account = accounts.get(id);
+        if (account != null) {
+            return account;
+        }
+        return base != null ? base.lookup(id) : store != null ? store.read(id, directory) : null;
     }
 
-    public static int extractIntegerFromReturnData(ByteArrayOutputStream byteArrayOutputStream) {
-        String[] lines = byteArrayOutputStream.toString().split("\\r?\\n");
-        JsonObject jsonObject = JsonParser.parseString(lines[lines.length - 1]).getAsJsonObject();
+    /**
+     * A version of the accounts seen by address, including the cold ones in the store.
+     */
+    private static final class AddressView extends AbstractMap<String, AccountState> {
+        private final AccountDirectory directory;
+        private final AccountStore store;
+        private final PersistentMap<Integer, AccountState> version;
+
+        private AddressView(AccountDirectory directory, AccountStore store, PersistentMap<Integer, AccountState> version) {
+            this.directory = directory;
+            this.store = store;
+            this.version = version;
+        }
+
+        @Override
+        public AccountState get(Object address) {
+            int id = address instanceof String ? directory.resolve((String) address) : -1;
+            return id >= 0 && directory.getAddress(id).equals(address) ? get(id) : null;
+        }
 
-        String memory = jsonObject.get("memory").getAsString();
+        private AccountState get(int id) {
+            AccountState account = version.get(id);
+            return account != null || store == null ? account : store.read(id, directory);
+        }
 
-        JsonArray stack = jsonObject.get("stack").getAsJsonArray();
-        int offset = Integer.decode(stack.get(stack.size() - 1).getAsString());
-        int size = Integer.decode(stack.get(stack.size() - 2).getAsString());
+        @Override
+        public boolean containsKey(Object address) {
+            return get(address) != null;
+        }
 
-        String returnData = memory.substring(2 + offset * 2, 2 + offset * 2 + size * 2);
-        return Integer.decode("0x" + returnData);
+        @Override
+        public int size() {
+            return store == null ? version.size() : directory.size(); // Every registered account is in one or the other
+        }
+
+        @Override
+        public Set<Map.Entry<String, AccountState>> entrySet() {
+            return new AbstractSet<Map.Entry<String, AccountState>>() {
+                @Override
+                public Iterator<Map.Entry<String, AccountState>> iterator() {
+                    if (store == null) {
+                        Iterator<Map.Entry<Integer, AccountState>> ids = version.entrySet().iterator();
+                        return new Iterator<Map.Entry<String, AccountState>>() {
+                            @Override
+                            public boolean hasNext() {
+                                return ids.hasNext();
+                            }
+
+                            @Override
+                            public Map.Entry<String, AccountState> next() {
+                                Map.Entry<Integer, AccountState> entry = ids.next();
+                                return new AbstractMap.SimpleImmutableEntry<>(directory.getAddress(entry.getKey()), entry.getValue());
+                            }
+                        };
+                    }
+                    int count = directory.size();
+                    return new Iterator<Map.Entry<String, AccountState>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < count;
+                        }
+
+                        @Override
+                        public Map.Entry<String, AccountState> next() {
+                            if (next >= count) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = next++;
+                            return new AbstractMap.SimpleImmutableEntry<>(directory.getAddress(id), get(id));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return AddressView.this.size();
+                }
+            };
+        }
     }
 
     public static String convertIntegerToHex256Bit(int number) {
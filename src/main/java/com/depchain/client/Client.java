@@ -21,6 +21,8 @@ import java.util.Base64;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import com.depchain.blockchain.Amounts;
+import com.depchain.blockchain.Transaction;
 import com.depchain.utils.Encryption;
 import com.depchain.utils.KeyManager;
 
@@ -162,7 +164,8 @@ public class Client {
     }
   
     /**
-     * Sends the sender name, receiver name, and amount as JSON to the server.
+     * Sends the sender name, receiver name, amount and nonce as JSON to the server,
+     * signed over all of them and the transaction data.
      * 
      *
      * @param receiverName The name of the recipient.
@@ -192,11 +195,18 @@ public class Client {
             return false;
         }
 
-        String signature = null;
-        try {
-            signature = Encryption.encryptWithPrivateKey(receiverName, this.privateKey);
-        } catch (Exception e) {
-            e.printStackTrace();
+        long nonce = fetchNonce();
+        if (nonce < 0) {
+            return false;
+        }
+
+        // 1. Sign the transaction the library will build
+        long units = Amounts.fromCoins(amountValue);
+        Transaction transaction = new Transaction(this.clientId, receiverName, units,
+                ClientLibrary.transactionData(this.clientId, receiverName, units), null, nonce);
+        if (!transaction.sign(this.privateKey)) {
+            System.err.println("Error: Could not sign the transaction.");
+            return false;
         }
 
         // 2. Create JSON Payload
@@ -204,7 +214,8 @@ public class Client {
         requestBody.put("senderName", this.clientId);      
         requestBody.put("receiverName", receiverName);    
         requestBody.put("amount", amountValue);            
-        requestBody.put("signature", signature);          
+        requestBody.put("nonce", nonce);
+        requestBody.put("signature", transaction.getSignature());          
 
         String jsonPayload = requestBody.toString();
         System.out.println("Sending request!"); 
@@ -250,6 +261,32 @@ public class Client {
         }
     }
 
+    /**
+     * Gets the nonce this client's next transaction must carry.
+     * 
+     * @return The nonce, or -1 if the server could not give it
+     */
+    private long fetchNonce() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(this.baseUrl + "/blockchain/nonce?sender=" + this.clientId))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                System.err.println("Error getting the nonce (Status code " + response.statusCode() + ").");
+                return -1;
+            }
+            return new JSONObject(response.body()).getLong("nonce");
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Error getting the nonce: " + e.getMessage());
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return -1;
+        }
+    }
+
     /**
      * Retrieves the current blockchain state.
      * 
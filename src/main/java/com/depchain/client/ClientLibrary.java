@@ -6,7 +6,14 @@ import java.nio.file.Paths;
 import java.security.PublicKey;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -31,7 +38,6 @@ import org.web3j.abi.datatypes.generated.Uint256;
 import org.web3j.abi.datatypes.Address;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.math.BigInteger;
 
 
@@ -61,6 +67,28 @@ public class ClientLibrary {
     private String lastReceivedBalance = null;
     private boolean balanceReceived = false;
     private final Object balanceLock = new Object();
+    private final Map<Integer, Set<String>> newLeaderVotes = new HashMap<>(); // Members that announced each view
+
+    // Transaction status, speculative after 2f + 1 matching tentative results, committed after f + 1 decides,
+    // failed after f + 1 rejections at admission or f + 1 decides of a block where it could not execute
+    public static final String PENDING = "pending";
+    public static final String SPECULATIVE = "speculative";
+    public static final String COMMITTED = "committed";
+    public static final String FAILED = "failed";
+    private static final long TRANSACTION_TIMEOUT_MS = 12000;
+    private static final long PENDING_EXPIRY_MS = 10 * TRANSACTION_TIMEOUT_MS; // Untracked if still not final by then
+    private static final int FINISHED_KEPT = 10000; // Final statuses kept for status queries, oldest dropped first
+    private static final int NONCES_KEPT = 10000; // Senders whose next nonce is kept, least recently used dropped first
+    private static final int REPLIES_KEPT = 10000; // Replies being counted, oldest dropped first
+    // Every map below only holds a bounded number of entries, or transactions of this client still in flight
+    private final Map<String, String> transactionStatus = new HashMap<>(); // By hash, pending or speculative transactions of this client
+    private final Map<String, Long> pendingSince = new LinkedHashMap<>(); // By hash, when each of those was submitted, oldest first
+    private final Map<String, String> speculativeEpochs = new HashMap<>(); // Epoch and digest each speculative transaction was reported in
+    private final Map<String, String> finishedStatus = bounded(FINISHED_KEPT, false); // By hash, committed or failed
+    private final Map<String, String> failureReasons = bounded(FINISHED_KEPT, false); // By transaction hash
+    private final Map<String, Long> nextNonces = bounded(NONCES_KEPT, true); // By sender, the nonce its next transaction gets
+    private final Map<String, Set<String>> replies = bounded(REPLIES_KEPT, false); // Members that sent each matching reply
+    private final Object statusLock = new Object();
 
     /**
      * Constructor for ClientLibrary with default port allocation.
@@ -168,6 +196,21 @@ public class ClientLibrary {
             case "BALANCE":
                 handleBalanceMessage(authMessage);
                 break;
+            case "NEW_LEADER":
+                handleNewLeaderMessage(sourceId, authMessage);
+                break;
+            case "SPECULATIVE":
+                handleSpeculativeMessage(sourceId, authMessage);
+                break;
+            case "COMMITTED":
+                handleCommittedMessage(sourceId, authMessage);
+                break;
+            case "ROLLBACK":
+                handleRollbackMessage(sourceId, authMessage);
+                break;
+            case "REJECTED":
+                handleRejectedMessage(sourceId, authMessage);
+                break;
             // Add other message types as needed
             default:
                 Logger.log(Logger.CLIENT_LIBRARY, "Unknown command received: " + command);
@@ -185,6 +228,8 @@ public class ClientLibrary {
 
         httpServer.createContext("/blockchain/append", new AppendHandler());
         httpServer.createContext("/blockchain/get", new GetHandler());
+        httpServer.createContext("/blockchain/status", new StatusHandler());
+        httpServer.createContext("/blockchain/nonce", new NonceHandler());
 
         httpServer.setExecutor(Executors.newFixedThreadPool(10));
         httpServer.start();
@@ -226,6 +271,7 @@ public class ClientLibrary {
                 String senderName = requestJson.optString("senderName", "");
                 String receiverName = requestJson.optString("receiverName", "");
                 double amount = requestJson.optDouble("amount", 0.0);
+                long nonce = requestJson.optLong("nonce", -1); // Covered by the signature, see /blockchain/nonce
 
                 if (senderName.isEmpty()) {
                     String response = "{\"error\":\"Missing or empty senderName\"}";
@@ -245,10 +291,32 @@ public class ClientLibrary {
                     return;
                 }
 
+                if (nonce < 0) {
+                    String response = "{\"error\":\"Missing nonce. The signature must cover it, get it from /blockchain/nonce\"}";
+                    sendResponse(exchange, 400, response);
+                    return;
+                }
+
+                try {
+                    Amounts.fromCoins(amount);
+                } catch (ArithmeticException e) {
+                    String response = "{\"error\":\"Invalid value. Amount must have at most " + Amounts.DECIMALS + " decimals\"}";
+                    sendResponse(exchange, 400, response);
+                    return;
+                }
+
 
-                boolean success = appendToBlockchain(senderName, receiverName, amount, signature);
-                String response = "{\"success\":" + success + "}";
-                sendResponse(exchange, 200, response);
+                String transactionHash = submitTransaction(senderName, receiverName, amount, signature, nonce);
+                // Answer as soon as the transaction is speculatively committed, without waiting for the decide
+                String status = waitForTransactionStatus(transactionHash, TRANSACTION_TIMEOUT_MS);
+                JSONObject response = new JSONObject();
+                response.put("success", true);
+                response.put("transaction", transactionHash);
+                response.put("status", status);
+                if (FAILED.equals(status)) {
+                    response.put("reason", getFailureReason(transactionHash));
+                }
+                sendResponse(exchange, 200, response.toString());
 
             } catch (Exception e) {
                 String response = "{\"error\":\"" + e.getMessage() + "\"}";
@@ -257,6 +325,362 @@ public class ClientLibrary {
         }
     }
 
+    /**
+     * Handler for the /blockchain/status endpoint.
+     * A speculative transaction can still be rolled back, clients poll this until it is committed.
+     */
+    private class StatusHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String query = exchange.getRequestURI().getQuery();
+            String transactionHash = null;
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    if (parameter.startsWith("transaction=")) {
+                        transactionHash = parameter.substring("transaction=".length());
+                    }
+                }
+            }
+            if (transactionHash == null || transactionHash.isEmpty()) {
+                sendResponse(exchange, 400, "{\"error\":\"Missing transaction\"}");
+                return;
+            }
+
+            String status = getTransactionStatus(transactionHash);
+            if (status == null) {
+                sendResponse(exchange, 404, "{\"error\":\"Unknown transaction\"}");
+                return;
+            }
+            JSONObject response = new JSONObject();
+            response.put("transaction", transactionHash);
+            response.put("status", status);
+            if (FAILED.equals(status)) {
+                response.put("reason", getFailureReason(transactionHash));
+            }
+            sendResponse(exchange, 200, response.toString());
+        }
+    }
+
+    /**
+     * Handler for the /blockchain/nonce endpoint.
+     * Gives the nonce the next transaction of a sender must carry, so the client can sign it.
+     */
+    private class NonceHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String query = exchange.getRequestURI().getQuery();
+            String sender = null;
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    if (parameter.startsWith("sender=")) {
+                        sender = parameter.substring("sender=".length());
+                    }
+                }
+            }
+            if (sender == null || sender.isEmpty()) {
+                sendResponse(exchange, 400, "{\"error\":\"Missing sender\"}");
+                return;
+            }
+            JSONObject response = new JSONObject();
+            response.put("sender", sender);
+            response.put("nonce", getNextNonce(sender));
+            sendResponse(exchange, 200, response.toString());
+        }
+    }
+
+    /**
+     * Handles a SPECULATIVE message with the tentative results of a block whose WRITE quorum formed.
+     * A transaction is speculatively committed once 2f + 1 members report the same result for it.
+     * A transaction that failed to execute stays pending until the block is decided.
+     * 
+     * @param sourceId The member that sent the results
+     * @param message The message received, see {@link #parseReport}
+     */
+    public void handleSpeculativeMessage(String sourceId, Message message) {
+        JSONObject report = parseReport(sourceId, message);
+        if (report == null) {
+            return;
+        }
+        String epoch = report.getInt("epoch") + ":" + report.getString("digest");
+        JSONObject results = report.getJSONObject("results");
+        int threshold = 2 * memberManager.getFaultTolerance() + 1;
+
+        synchronized (statusLock) {
+            for (String transactionHash : results.keySet()) {
+                if (results.getString(transactionHash).startsWith(FAILED) || !PENDING.equals(transactionStatus.get(transactionHash))) {
+                    continue; // Only the pending transactions of this client are counted
+                }
+                String reply = "SPECULATIVE:" + epoch + ":" + transactionHash + ":" + results.getString(transactionHash);
+                if (addReply(reply, sourceId) >= threshold) {
+                    transactionStatus.put(transactionHash, SPECULATIVE);
+                    speculativeEpochs.put(transactionHash, epoch);
+                    replies.remove(reply);
+                    Logger.log(Logger.CLIENT_LIBRARY, "Transaction " + transactionHash + " speculatively committed");
+                }
+            }
+            statusLock.notifyAll();
+        }
+    }
+
+    /**
+     * Handles a COMMITTED message sent when a block is decided.
+     * Deciding is final, so f + 1 matching messages guarantee a correct member decided.
+     * The transactions of this client that could not execute are marked failed, the rest committed,
+     * and they are no longer tracked as in flight.
+     * 
+     * @param sourceId The member that decided
+     * @param message The message received, see {@link #parseReport}
+     */
+    public void handleCommittedMessage(String sourceId, Message message) {
+        JSONObject report = parseReport(sourceId, message);
+        if (report == null) {
+            return;
+        }
+        JSONObject failed = report.optJSONObject("failed");
+        Map<String, String> failures = new TreeMap<>();
+        if (failed != null) {
+            for (String transactionHash : failed.keySet()) {
+                failures.put(transactionHash, failed.optString(transactionHash));
+            }
+        }
+        String reply = "COMMITTED:" + report.getInt("epoch") + ":" + report.getString("digest") + ":" + failures;
+
+        synchronized (statusLock) {
+            if (addReply(reply, sourceId) >= memberManager.getFaultTolerance() + 1) {
+                for (Object transactionHash : report.getJSONArray("transactions")) {
+                    if (!transactionStatus.containsKey(transactionHash)) {
+                        continue; // Another client's, or already final
+                    }
+                    if (failures.containsKey(transactionHash)) {
+                        finish((String) transactionHash, FAILED, failures.get(transactionHash));
+                        Logger.log(Logger.CLIENT_LIBRARY, "Transaction " + transactionHash + " failed: " + failures.get(transactionHash));
+                    } else {
+                        finish((String) transactionHash, COMMITTED, null);
+                    }
+                }
+                replies.remove(reply);
+            }
+            statusLock.notifyAll();
+        }
+    }
+
+    /**
+     * Handles a ROLLBACK message sent when a block that was speculatively reported is aborted.
+     * The transactions go back to pending, the members keep them for a later block.
+     * 
+     * @param sourceId The member that aborted
+     * @param message The message received, see {@link #parseReport}
+     */
+    public void handleRollbackMessage(String sourceId, Message message) {
+        JSONObject report = parseReport(sourceId, message);
+        if (report == null) {
+            return;
+        }
+        String epoch = report.getInt("epoch") + ":" + report.getString("digest");
+        String reply = "ROLLBACK:" + epoch;
+
+        synchronized (statusLock) {
+            if (addReply(reply, sourceId) >= memberManager.getFaultTolerance() + 1) {
+                for (Object transactionHash : report.getJSONArray("transactions")) {
+                    if (SPECULATIVE.equals(transactionStatus.get(transactionHash)) && epoch.equals(speculativeEpochs.get(transactionHash))) {
+                        transactionStatus.put((String) transactionHash, PENDING);
+                        speculativeEpochs.remove(transactionHash);
+                        Logger.log(Logger.CLIENT_LIBRARY, "Transaction " + transactionHash + " rolled back");
+                    }
+                }
+                replies.remove(reply);
+            }
+            statusLock.notifyAll();
+        }
+    }
+
+    /**
+     * Handles a REJECTED message sent when a member refuses a transaction at admission:
+     * {"transaction": hash, "reason": why, "sender": name, "nonce": next nonce of the sender}
+     * Correct members never propose a transaction they rejected, so f + 1 rejections make it final.
+     * 
+     * @param sourceId The member that rejected the transaction
+     * @param message The message received
+     */
+    public void handleRejectedMessage(String sourceId, Message message) {
+        JSONObject rejection;
+        String transactionHash;
+        String reason;
+        try {
+            rejection = new JSONObject(message.getPayload());
+            transactionHash = rejection.getString("transaction");
+            reason = rejection.optString("reason", "rejected");
+        } catch (Exception e) {
+            Logger.log(Logger.CLIENT_LIBRARY, "Invalid REJECTED from " + sourceId + ": " + e.getMessage());
+            return;
+        }
+        // Members may disagree on the reason, for example on what the sender has pending
+        String reply = "REJECTED:" + transactionHash;
+
+        synchronized (statusLock) {
+            // The next transactions of the sender get the nonce f + 1 members expect
+            if (rejection.has("sender") && rejection.has("nonce")) {
+                String sender = rejection.getString("sender");
+                long nonce = rejection.getLong("nonce");
+                String nonceReply = "NONCE:" + sender + ":" + nonce + ":" + transactionHash;
+                if (addReply(nonceReply, sourceId) >= memberManager.getFaultTolerance() + 1) {
+                    nextNonces.put(sender, nonce);
+                    replies.remove(nonceReply);
+                }
+            }
+            if (PENDING.equals(transactionStatus.get(transactionHash)) && addReply(reply, sourceId) >= memberManager.getFaultTolerance() + 1) {
+                finish(transactionHash, FAILED, reason);
+                replies.remove(reply);
+                Logger.log(Logger.CLIENT_LIBRARY, "Transaction " + transactionHash + " rejected: " + reason);
+            }
+            statusLock.notifyAll();
+        }
+    }
+
+    /**
+     * Parses the report of a block sent by a member:
+     * {"epoch": timestamp, "digest": value digest, "transactions": [hashes], "results": {hash: result},
+     *  "failed": {hash: reason}}
+     * 
+     * @return The report, or null if it is malformed
+     */
+    private JSONObject parseReport(String sourceId, Message message) {
+        try {
+            JSONObject report = new JSONObject(message.getPayload());
+            report.getInt("epoch");
+            report.getString("digest");
+            report.getJSONArray("transactions");
+            return report;
+        } catch (Exception e) {
+            Logger.log(Logger.CLIENT_LIBRARY, "Invalid " + message.getCommand() + " from " + sourceId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records the final status of a transaction of this client, which is then no longer in flight.
+     * Must be called holding the status lock.
+     */
+    private void finish(String transactionHash, String status, String reason) {
+        transactionStatus.remove(transactionHash);
+        pendingSince.remove(transactionHash);
+        speculativeEpochs.remove(transactionHash);
+        finishedStatus.put(transactionHash, status);
+        if (reason != null) {
+            failureReasons.put(transactionHash, reason);
+        }
+    }
+
+    /**
+     * Stops tracking the transactions submitted more than {@link #PENDING_EXPIRY_MS} ago that are
+     * still not final, for example because a faulty leader dropped them.
+     * Must be called holding the status lock.
+     */
+    private void expirePending() {
+        long expired = System.currentTimeMillis() - PENDING_EXPIRY_MS;
+        Iterator<Map.Entry<String, Long>> oldest = pendingSince.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Map.Entry<String, Long> entry = oldest.next();
+            if (entry.getValue() > expired) {
+                break;
+            }
+            oldest.remove();
+            transactionStatus.remove(entry.getKey());
+            speculativeEpochs.remove(entry.getKey());
+            Logger.log(Logger.CLIENT_LIBRARY, "Transaction " + entry.getKey() + " no longer tracked, not final after " + PENDING_EXPIRY_MS + "ms");
+        }
+    }
+
+    /**
+     * Creates a map that drops its eldest entry once it holds more than a number of entries.
+     *
+     * @param capacity The number of entries kept
+     * @param accessOrder true to drop the least recently used entry, false the least recently inserted
+     */
+    private static <K, V> Map<K, V> bounded(int capacity, boolean accessOrder) {
+        return new LinkedHashMap<K, V>(16, 0.75f, accessOrder) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    private int addReply(String reply, String sourceId) {
+        Set<String> members = replies.computeIfAbsent(reply, r -> new HashSet<>());
+        members.add(sourceId);
+        return members.size();
+    }
+
+    /**
+     * Waits until a transaction is speculatively committed or committed.
+     * 
+     * @param transactionHash The hash of the transaction
+     * @param timeoutMs Maximum time to wait in milliseconds
+     * @return The status of the transaction when the wait ended
+     */
+    private String waitForTransactionStatus(String transactionHash, long timeoutMs) {
+        long endTime = System.currentTimeMillis() + timeoutMs;
+        synchronized (statusLock) {
+            while (PENDING.equals(status(transactionHash)) && System.currentTimeMillis() < endTime) {
+                try {
+                    statusLock.wait(Math.max(1, endTime - System.currentTimeMillis()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return status(transactionHash);
+        }
+    }
+
+    /**
+     * Gets the status of a transaction, in flight or final. Must be called holding the status lock.
+     */
+    private String status(String transactionHash) {
+        String status = transactionStatus.get(transactionHash);
+        return status != null ? status : finishedStatus.get(transactionHash);
+    }
+
+    public String getFailureReason(String transactionHash) {
+        synchronized (statusLock) {
+            return failureReasons.get(transactionHash);
+        }
+    }
+
+    public String getTransactionStatus(String transactionHash) {
+        synchronized (statusLock) {
+            return status(transactionHash);
+        }
+    }
+
+    /**
+     * Handles a NEW_LEADER message announcing an installed view.
+     * The view is only followed once f + 1 members announced it, so at least one of them is correct.
+     * 
+     * @param sourceId The member that announced the view
+     * @param message The message received, its payload is the new view number
+     */
+    public synchronized void handleNewLeaderMessage(String sourceId, Message message) {
+        int view;
+        try {
+            view = Integer.parseInt(message.getPayload().trim());
+        } catch (NumberFormatException e) {
+            Logger.log(Logger.CLIENT_LIBRARY, "Invalid NEW_LEADER payload from " + sourceId);
+            return;
+        }
+        if (view <= memberManager.getView()) {
+            return;
+        }
+
+        Set<String> votes = newLeaderVotes.computeIfAbsent(view, v -> new HashSet<>());
+        votes.add(sourceId);
+        if (votes.size() >= memberManager.getFaultTolerance() + 1 && memberManager.changeView(view)) {
+            newLeaderVotes.keySet().removeIf(v -> v <= view);
+            Logger.log(Logger.CLIENT_LIBRARY, "Leader changed to " + memberManager.getLeaderName() + " in view " + view);
+        }
+    }
+
     /**
      * Handles BALANCE response messages from the consensus nodes.
      * 
@@ -403,44 +827,63 @@ public class ClientLibrary {
     }
 
     /**
- * Appends a string to the blockchain.
- * 
- * @param senderName     The sender's name (or address)
- * @param receiverName   The receiver's name (or address)
- * @param amount         The amount to send (for transactions or smart contracts)
- * @param senderSignature The signature of the sender
- * @return true if the request was sent, false otherwise
- * @throws Exception If sending fails
- */
-public boolean appendToBlockchain(String senderName, String receiverName, double amount, String senderSignature) throws Exception {
-    String transactionData = "";
-    String signature = senderSignature;
+     * Appends a string to the blockchain.
+     * 
+     * @param senderName     The sender's name (or address)
+     * @param receiverName   The receiver's name (or address)
+     * @param amount         The amount to send (for transactions or smart contracts)
+     * @param senderSignature The signature of the sender
+     * @return true if the request was sent, false otherwise
+     * @throws Exception If sending fails
+     */
+    public boolean appendToBlockchain(String senderName, String receiverName, double amount, String senderSignature) throws Exception {
+        return submitTransaction(senderName, receiverName, amount, senderSignature) != null;
+    }
 
-    if (isSmartContract(receiverName)) {
-            /*Not implemented*/
-            BigInteger amountInWei = convertAmountToWei(amount);
+    /**
+     * Creates a transaction, sends it to the members and starts tracking its status.
+     * 
+     * @param senderName     The sender's name (or address)
+     * @param receiverName   The receiver's name (or address)
+     * @param amount         The amount to send (for transactions or smart contracts)
+     * @param senderSignature The signature of the sender
+     * @return The hash of the transaction
+     * @throws Exception If sending fails
+     */
+    public String submitTransaction(String senderName, String receiverName, double amount, String senderSignature) throws Exception {
+        return submitTransaction(senderName, receiverName, amount, senderSignature, -1);
+    }
 
-            // Prepare the method call parameters for the smart contract transfer
-            String methodName = "transfer";
-            List<Type> inputParameters = Arrays.asList(
-                new Address(receiverName),
-                new Uint256(amountInWei)    
-            );
+    /**
+     * Creates a transaction with a given nonce, sends it to the members and starts tracking its status.
+     * 
+     * @param senderName     The sender's name (or address)
+     * @param receiverName   The receiver's name (or address)
+     * @param amount         The amount to send (for transactions or smart contracts)
+     * @param senderSignature The signature of the sender
+     * @param nonce          The sender's nonce, or -1 to use the next one this library knows of
+     * @return The hash of the transaction
+     * @throws Exception If sending fails
+     */
+    public String submitTransaction(String senderName, String receiverName, double amount, String senderSignature, long nonce) throws Exception {
+        String signature = senderSignature;
+        long units = Amounts.fromCoins(amount); // Exact from here on
+        String transactionData = transactionData(senderName, receiverName, units);
 
-            // Encode the function call
-            Function function = new Function(methodName, inputParameters, Collections.emptyList());
-            transactionData = FunctionEncoder.encode(function);  // This is your tx.data
-        } else {
-            // If the receiver is not a smart contract, use default transaction data
-            transactionData = "Transaction from " + senderName + " to " + receiverName + " for amount: " + amount;
+        synchronized (statusLock) {
+            if (nonce < 0) {
+                nonce = nextNonces.getOrDefault(senderName, 0L);
+            }
+            nextNonces.put(senderName, Math.max(nextNonces.getOrDefault(senderName, 0L), nonce + 1));
         }
 
         Transaction transaction = new Transaction(
                 senderName,
                 receiverName,
-                amount,
+                units,
                 transactionData,
-                signature
+                signature,
+                nonce
         );
 
         String serializedTransaction;
@@ -455,26 +898,63 @@ public boolean appendToBlockchain(String senderName, String receiverName, double
         }
 
         try {
-            sendToLeader(serializedTransaction, "TRANSACTION");
+            // Every member keeps the transaction pending, so a new leader can take over if the current one fails
+            String transactionHash = transaction.getHash();
+            synchronized (statusLock) {
+                expirePending();
+                if (status(transactionHash) == null) {
+                    transactionStatus.put(transactionHash, PENDING);
+                    pendingSince.put(transactionHash, System.currentTimeMillis());
+                }
+            }
+            sendToAllMembers(serializedTransaction, "TRANSACTION");
             Logger.log(Logger.CLIENT_LIBRARY, "Sent PROPOSE request for transaction.");
-            return true;
+            return transactionHash;
         } catch (Exception e) {
             Logger.log(Logger.CLIENT_LIBRARY, "Error: Failed sending proposal: " + e.getMessage());
             throw new Exception("Failed to send proposal to leader", e);
         }
     }
 
+
     /**
-     * Converts the amount in Ether to Wei (BigInteger).
-     * @param amount The amount in Ether.
-     * @return The amount in Wei (BigInteger).
+     * Builds the data of a transaction, which its signature covers, so the client builds it the same way.
+     * 
+     * @param senderName   The sender's name (or address)
+     * @param receiverName The receiver's name (or address)
+     * @param units        The amount, in units
+     * @return The call data for a smart contract, a description of the transfer otherwise
      */
-    private BigInteger convertAmountToWei(double amount) {
-        BigDecimal etherValue = BigDecimal.valueOf(amount);
-        BigDecimal weiValue = etherValue.multiply(BigDecimal.valueOf(1_000_000_000_000_000_000L));
-        return weiValue.toBigInteger();
+    public static String transactionData(String senderName, String receiverName, long units) {
+        if (isSmartContract(receiverName)) {
+            BigInteger amountInWei = Amounts.toWei(units);
+
+            // Prepare the method call parameters for the smart contract transfer
+            String methodName = "transfer";
+            List<Type> inputParameters = Arrays.asList(
+                new Address(receiverName),
+                new Uint256(amountInWei)    
+            );
+
+            // Encode the function call
+            Function function = new Function(methodName, inputParameters, Collections.emptyList());
+            return FunctionEncoder.encode(function);  // This is your tx.data
+        }
+        // If the receiver is not a smart contract, use default transaction data
+        return "Transaction from " + senderName + " to " + receiverName + " for amount: " + Amounts.format(units);
     }
 
+    /**
+     * Gets the nonce the next transaction of a sender must carry, as far as this library knows.
+     * 
+     * @param senderName The sender's name
+     * @return The nonce
+     */
+    public long getNextNonce(String senderName) {
+        synchronized (statusLock) {
+            return nextNonces.getOrDefault(senderName, 0L);
+        }
+    }
 
     /**
      * Checks if the given address is a smart contract.
@@ -545,6 +1025,19 @@ public boolean appendToBlockchain(String senderName, String receiverName, double
         memberManager.sendToMember(memberManager.getLeaderName(), payload, command);
     }
 
+    /**
+     * Sends a message to every member.
+     * 
+     * @param payload The message payload
+     * @param command The command to execute
+     */
+    private void sendToAllMembers(String payload, String command) {
+        Logger.log(Logger.CLIENT_LIBRARY, "Sending message to all members: " + command);
+        for (String member : memberManager.getMemberLinks().keySet()) {
+            memberManager.sendToMember(member, payload, command);
+        }
+    }
+
     /**
      * Main method to start a ClientLibrary instance with command-line parameters.
      * Usage: java -jar clientlibrary.jar [clientPort] [httpPort]
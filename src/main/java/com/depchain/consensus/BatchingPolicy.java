@@ -0,0 +1,89 @@
+package com.depchain.consensus;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.json.JSONObject;
+
+import com.depchain.blockchain.Transaction;
+import com.depchain.utils.Logger;
+
+/**
+ * Decides how many pending transactions go into the next block.
+ *
+ * A block takes the best ready transactions of the {@link Mempool} until the next one would
+ * exceed the transaction, byte or gas limit. The leader cuts a block as soon as the mempool fills
+ * one, or once the oldest pending transaction has waited for the latency target. Transactions
+ * that arrive while an epoch is running are batched into the next block when the epoch ends.
+ *
+ * The policy is read from the optional "batching" object of setup.json:
+ *   "batching": { "maxTransactions": 256, "maxBytes": 1048576, "maxGas": 30000000, "latencyTargetMs": 50 }
+ */
+public class BatchingPolicy {
+    private int maxTransactions = 256;
+    private long maxBytes = 1 << 20;
+    private long maxGas = 30_000_000;
+    private long latencyTargetMs = 50;
+
+    public BatchingPolicy() {
+    }
+
+    /**
+     * Loads the policy from a setup file, keeping the defaults for anything not configured.
+     *
+     * @param setupFilePath The path to setup.json
+     * @return The batching policy
+     */
+    public static BatchingPolicy load(String setupFilePath) {
+        BatchingPolicy policy = new BatchingPolicy();
+        try {
+            String content = new String(Files.readAllBytes(Paths.get(setupFilePath)));
+            JSONObject json = new JSONObject(content);
+            if (json.has("batching")) {
+                JSONObject batching = json.getJSONObject("batching");
+                policy.maxTransactions = Math.max(1, batching.optInt("maxTransactions", policy.maxTransactions));
+                policy.maxBytes = Math.max(1, batching.optLong("maxBytes", policy.maxBytes));
+                policy.maxGas = Math.max(1, batching.optLong("maxGas", policy.maxGas));
+                policy.latencyTargetMs = Math.max(0, batching.optLong("latencyTargetMs", policy.latencyTargetMs));
+            }
+        } catch (Exception e) {
+            Logger.log(Logger.LEADER_ERRORS, "Error loading batching policy, using defaults: " + e.getMessage());
+        }
+        return policy;
+    }
+
+    /**
+     * Checks whether the mempool holds enough queued transactions to fill a block.
+     *
+     * @param mempool The pending transactions
+     * @return True if a block cut now would be full
+     */
+    public boolean isFull(Mempool mempool) {
+        return mempool.getQueuedCount() >= maxTransactions || mempool.getQueuedBytes() >= maxBytes
+                || mempool.getQueuedGas() >= maxGas;
+    }
+
+    /**
+     * Checks whether one more transaction fits in a block.
+     *
+     * @param count The number of transactions already in the block
+     * @param bytes The size of the transactions already in the block
+     * @param gas The gas of the transactions already in the block
+     * @param next The transaction to add
+     * @return True if the block stays within every limit
+     */
+    public boolean fits(int count, long bytes, long gas, Transaction next) {
+        return count < maxTransactions && bytes + next.getEncodedSize() <= maxBytes
+                && gas + next.getIntrinsicGas() <= maxGas;
+    }
+
+    //--- Getters and Setters ---
+
+    public long getLatencyTargetMs() {
+        return latencyTargetMs;
+    }
+
+    public int getMaxTransactions() {
+        return maxTransactions;
+    }
+}
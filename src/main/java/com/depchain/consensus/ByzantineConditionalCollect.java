@@ -25,8 +25,8 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
     private final MemberManager memberManager;
     private final ByzantineEpochConsensus epochConsensus;
     private Map<String, EpochState> collected = new HashMap<>();
-    private Map<String, String> writeAcks = new HashMap<>();
-    private Map<String, String> acceptAcks = new HashMap<>();
+    private Map<String, EpochState> writeAcks = new HashMap<>();
+    private Map<String, EpochState> acceptAcks = new HashMap<>();
     private boolean isCollected = false;
     private boolean writeAcked = false;
     private boolean acceptAcked = false;
@@ -159,8 +159,8 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
                 continue;
             }
             
-            String value = state.getValue();
-            valueCounts.put(value, valueCounts.getOrDefault(value, 0) + 1);
+            String digest = state.getDigest();
+            valueCounts.put(digest, valueCounts.getOrDefault(digest, 0) + 1);
         }
         
         // Check if any value has reached quorum
@@ -190,17 +190,17 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
      * Checks if a quorum exists in the acknowledgments
      */
     @Override
-    public boolean checkAckQuorum(Map<String, String> Acks) {
+    public boolean checkAckQuorum(Map<String, EpochState> Acks) {
         // If we don't have enough entries, quorum can't be reached
         if (Acks.size() < (memberManager.getQuorumSize() - 1)) { // - 1 because we count with ourself
             return false;
         }
         
         // Count occurrences of each value
-        Map<String, Integer> valueCounts = new HashMap<>();
+        Map<EpochState, Integer> valueCounts = new HashMap<>();
         
-        // Group by value and count
-        for (String ack : Acks.values()) {
+        // Group by (timestamp, digest) and count
+        for (EpochState ack : Acks.values()) {
             // Handle null values
             if (ack == null) {
                 valueCounts.put(null, valueCounts.getOrDefault(null, 0) + 1);
@@ -253,13 +253,13 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
                 } else {
                     Logger.log(Logger.CONDITIONAL_COLLECT, "RANDOM behavior: manipulating " + ackType + " ack");
                     // Corrupt the ack by adding fake entries
-                    Map<String, String> ack = parseAck(ackPayload);
+                    Map<String, EpochState> ack = parseAck(ackPayload);
                     if (ackType.equals("ACCEPT")) {
                         acceptAcks.putAll(ack);
-                        acceptAcks.put("fake-member-" + random.nextInt(100), "fake-ack");
+                        acceptAcks.put("fake-member-" + random.nextInt(100), new EpochState(0, "fake-ack"));
                     } else if (ackType.equals("WRITE")) {
                         writeAcks.putAll(ack);
-                        writeAcks.put("fake-member-" + random.nextInt(100), "fake-ack");
+                        writeAcks.put("fake-member-" + random.nextInt(100), new EpochState(0, "fake-ack"));
                     }
                 }
                 break;
@@ -272,11 +272,11 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
     private void processAck(String ackPayload, String ackType) {
         if (ackType.equals("ACCEPT")) {
             if (acceptAcked) { return; }
-            Map<String, String> ack = parseAck(ackPayload);
+            Map<String, EpochState> ack = parseAck(ackPayload);
             acceptAcks.putAll(ack);
         } else if (ackType.equals("WRITE")) {
             if (writeAcked) { return; }
-            Map<String, String> ack = parseAck(ackPayload);
+            Map<String, EpochState> ack = parseAck(ackPayload);
             writeAcks.putAll(ack);
         }
     }
@@ -285,35 +285,13 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
      * Parses an acknowledgment payload into a map
      */
     @Override
-    public Map<String, String> parseAck(String ackPayload) {
-        Map<String, String> result = new HashMap<>();
-        
-        if (ackPayload != null && !ackPayload.isEmpty()) {
-            // Split the payload by newline to handle multiple entries
-            String[] entries = ackPayload.split("\n");
-            
-            for (String entry : entries) {
-                // Check if the entry contains a colon
-                if (entry.contains(":")) {
-                    // Split by the first colon to separate member name and value
-                    String[] parts = entry.split(":", 2);
-                    
-                    if (parts.length == 2) {
-                        String memberName = parts[0].trim();
-                        String value = parts[1].trim();
-                        
-                        // Extract the value from between square brackets if present
-                        if (value.startsWith("[") && value.endsWith("]")) {
-                            value = value.substring(1, value.length() - 1);
-                        }
-                        
-                        result.put(memberName, value);
-                    }
-                }
-            }
+    public Map<String, EpochState> parseAck(String ackPayload) {
+        try {
+            return ConsensusCodec.decode(ackPayload);
+        } catch (IllegalArgumentException e) {
+            Logger.log(Logger.CONDITIONAL_COLLECT, "Error parsing ack: " + e.getMessage());
+            return new HashMap<>();
         }
-        
-        return result;
     }
     
     /**
@@ -321,18 +299,7 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
      */
     @Override
     public String createAck(EpochState value) {
-        // Format as "membername: [value]"
-        StringBuilder builder = new StringBuilder();
-        builder.append(name).append(": [");
-        
-        // Add the value if it's not null
-        if (value != null) {
-            builder.append(value.toString());
-        }
-        
-        builder.append("]");
-        
-        return builder.toString();
+        return ConsensusCodec.encode(name, value);
     }
     
     /**
@@ -350,29 +317,20 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
                     // NoMan pretends to participate but will abort later
                     if (memberManager.isLeader()) {
                         collected.put(memberManager.getName(), message);
+                        // Disseminate the value body once, every later message only carries its digest
+                        epochConsensus.disseminateValue(message);
                         // Send READ message to all members
                         for (String member : memberManager.getMemberLinks().keySet()) {
                             memberManager.sendToMember(member, "", "READ");
                         }
                         // Wait for replies but plan to abort later
-                        Thread collectionThread = new Thread(() -> {
-                            waitForStates();
-                        });
-                        collectionThread.start();
+                        waitForStates();
                     } else {
                         // Respond to leader with manipulated state
                         Logger.log(Logger.CONDITIONAL_COLLECT, "NO_MAN behavior: sending manipulated state to leader");
                         memberManager.sendToMember(memberManager.getLeaderName(), "fake-state", "STATE");
-                        Thread collectionThread = new Thread(() -> {
-                            // Wait briefly, then abort
-                            try {
-                                Thread.sleep(2000);
-                                abort();
-                            } catch (InterruptedException e) {
-                                Logger.log(Logger.CONDITIONAL_COLLECT, "Error in NoMan wait: " + e.getMessage());
-                            }
-                        });
-                        collectionThread.start();
+                        // Wait briefly, then abort
+                        epochConsensus.getEventLoop().schedule(2000, this::abort);
                     }
                     break;
                     
@@ -409,32 +367,59 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
         }
     }
     
+    /**
+     * Inputs a value through the fast path
+     */
+    @Override
+    public void fastInput(EpochState value) {
+        switch (behavior) {
+            case NO_MAN:
+                Logger.log(Logger.CONDITIONAL_COLLECT, "NO_MAN behavior: aborting fast path proposal");
+                abort();
+                break;
+            case OMIT:
+                if (random.nextDouble() < 0.5) {
+                    Logger.log(Logger.CONDITIONAL_COLLECT, "OMIT behavior: omitting fast path proposal");
+                    return;
+                }
+                consensusLoop(value);
+                break;
+            case RANDOM:
+                if (random.nextBoolean()) {
+                    consensusLoop(value);
+                } else {
+                    Logger.log(Logger.CONDITIONAL_COLLECT, "RANDOM behavior: writing corrupted value");
+                    consensusLoop(new EpochState(value.getTimeStamp(), "corrupted-value"));
+                }
+                break;
+            default:
+                consensusLoop(value);
+                break;
+        }
+    }
+
     /**
      * Normal input behavior
      */
     private void normalInput(EpochState message) {
         if (memberManager.isLeader()) {
             collected.put(memberManager.getName(), message);
+            // Disseminate the value body once, every later message only carries its digest
+            epochConsensus.disseminateValue(message);
             // Send READ message to all members
             for (String member : memberManager.getMemberLinks().keySet()) {
                 memberManager.sendToMember(member, "", "READ");
             }
             // Wait for the STATE replies from each member
-            Thread collectionThread = new Thread(() -> {
-                waitForStates();
-            });
-            collectionThread.start();
+            waitForStates();
         } else {
             // Send to leader the STATE message
             String statePayload = createCollectedPayload(collected);
             Logger.log(Logger.CONDITIONAL_COLLECT, "Sending state to leader");
             memberManager.sendToMember(memberManager.getLeaderName(), statePayload, "STATE");
             
-            // Start waitForCollected in a new thread
-            Thread collectionThread = new Thread(() -> {
-                waitForStates();
-            });
-            collectionThread.start();
+            // Wait for the COLLECTED message from the leader
+            waitForStates();
         }
     }
     
@@ -443,15 +428,10 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
      */
     @Override
     protected void waitForStates() {
-        try {
-            // Wait for all members to send their state
-            for (int i = 0; i < 12; i++) {
-                Thread.sleep(1000);
-                if (isCollected) { break; }
-                Logger.log(Logger.CONDITIONAL_COLLECT, "Waiting for states");
-                Logger.log(Logger.CONDITIONAL_COLLECT, "Quorum size: " + memberManager.getQuorumSize());
-                Logger.log(Logger.CONDITIONAL_COLLECT, "Collected size: " + collected.size());
-            }
+        // Wait for all members to send their state
+        Logger.log(Logger.CONDITIONAL_COLLECT, "Waiting for states, quorum size: " + memberManager.getQuorumSize());
+        epochConsensus.getTimeoutPolicy().when(epochConsensus.getEventLoop(), TimeoutPolicy.STATES, () -> isCollected, collectedInTime -> {
+            Logger.log(Logger.CONDITIONAL_COLLECT, "Collected size: " + collected.size());
             
             if (isCollected) {
                 if (memberManager.isLeader()) {
@@ -469,106 +449,31 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
                 Logger.log(Logger.CONDITIONAL_COLLECT, "Timeout waiting for states");
                 abort(); // Send ABORT message to all members
             }
-        } catch (Exception e) {
-            Logger.log(Logger.CONDITIONAL_COLLECT, "Error collecting States, aborting: " + e.getMessage() + e.getStackTrace() + e.getCause());
-        }
+        });
     }
     
     /**
-     * Creates a formatted string payload from the collected map
+     * Creates an encoded payload from the collected map
      */
     private String createCollectedPayload(Map<String, EpochState> collected) {
-        StringBuilder payload = new StringBuilder();
-        boolean first = true;
-        
-        for (Map.Entry<String, EpochState> entry : collected.entrySet()) {
-            if (!first) {
-                payload.append(", ");
-            } else {
-                first = false;
-            }
-            
-            payload.append(entry.getKey())
-                .append(": [");
-            
-            // Check if the value is null
-            if (entry.getValue() != null) {
-                payload.append(entry.getValue().toString());
-            }
-            
-            payload.append("]");
-        }
-        
-        if (payload.toString().isEmpty()) {
-            return memberManager.getName() + ": []";
+        if (collected.isEmpty()) {
+            return ConsensusCodec.encode(memberManager.getName(), null);
         }
-        
-        return payload.toString();
+        return ConsensusCodec.encode(collected, false);
     }
     
     /**
-     * Parses a formatted collected payload back into a HashMap
+     * Parses an encoded collected payload back into a HashMap
      */
+    @Override
     protected Map<String, EpochState> parseCollectedPayload(String payload) {
-        Map<String, EpochState> collected = new HashMap<>();
         Logger.log(Logger.CONDITIONAL_COLLECT, "Parsing collected payload");
-        
-        // Handle empty payload
-        if (payload == null || payload.trim().isEmpty()) {
-            return collected;
-        }
-        
-        int startIdx = 0;
-        while (startIdx < payload.length()) {
-            // Find the key part
-            int keyEnd = payload.indexOf(": [", startIdx);
-            if (keyEnd == -1) break;
-            
-            String key = payload.substring(startIdx, keyEnd);
-            
-            // Find the closing bracket that matches our opening bracket
-            int openBracket = keyEnd + 2; // position of '['
-            int closeBracket = openBracket + 1;
-            int bracketCount = 1;
-            
-            while (closeBracket < payload.length() && bracketCount > 0) {
-                if (payload.charAt(closeBracket) == '[') bracketCount++;
-                else if (payload.charAt(closeBracket) == ']') bracketCount--;
-                closeBracket++;
-            }
-            
-            if (bracketCount != 0) break; // Malformed input
-            
-            // Extract content between brackets
-            String content = payload.substring(openBracket + 1, closeBracket - 1);
-            
-            // Handle empty brackets
-            if (content.isEmpty()) {
-                collected.put(key, null);
-            } else {
-                // For non-empty content, find the first comma to separate timestamp and value
-                int firstComma = content.indexOf(", ");
-                if (firstComma != -1) {
-                    try {
-                        int timestamp = Integer.parseInt(content.substring(0, firstComma));
-                        String value = content.substring(firstComma + 2);
-                        collected.put(key, new EpochState(timestamp, value));
-                    } catch (NumberFormatException e) {
-                        Logger.log(Logger.CONDITIONAL_COLLECT, "Error parsing timestamp: " + e.getMessage());
-                    }
-                }
-            }
-            
-            // Move to next entry
-            startIdx = closeBracket;
-            // Skip comma and space if present
-            if (startIdx < payload.length() && payload.charAt(startIdx) == ',') {
-                startIdx += 2; // Skip ", "
-            }
+        try {
+            return ConsensusCodec.decode(payload);
+        } catch (IllegalArgumentException e) {
+            Logger.log(Logger.CONDITIONAL_COLLECT, "Error parsing collected payload: " + e.getMessage());
+            return new HashMap<>();
         }
-        
-        Logger.log(Logger.CONDITIONAL_COLLECT, "Parsed collected payload");
-        return collected;
     }
     
     /**
@@ -640,94 +545,80 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
      * Starts the consensus loop
      */
     private void consensusLoop(EpochState value) {
-        try {
-            if (!(behavior == ByzantineBehavior.YES_MAN)) {
-                Block block = new Block();
+        epochConsensus.resolveValue(value, resolved -> {
+            if (!resolved) {
+                Logger.log(Logger.CONDITIONAL_COLLECT, "Value body not available, aborting");
+                abort();
+                return;
+            }
+            if (behavior == ByzantineBehavior.YES_MAN) {
+                sendVote(QuorumCertificate.WRITE, value);
+                waitForWrite(value);
+                return;
+            }
+            Block block;
+            try {
                 block = Block.deserializeFromBase64(value.getValue());
-                if (!epochConsensus.getWorldState().areAllTransactionsValid(block)) {
-                    Logger.log(Logger.CONDITIONAL_COLLECT, "Block is not valid, aborting");
+            } catch (Exception e) {
+                System.out.println(e.getMessage());
+                Logger.log(Logger.CONDITIONAL_COLLECT, "Error deserializing block");
+                abort();
+                return;
+            }
+            // Signatures are verified off the loop, then the block executes while the WRITE and ACCEPT rounds run
+            epochConsensus.validate(value, block, valid -> {
+                if (!valid) {
+                    Logger.log(Logger.CONDITIONAL_COLLECT, "Block has a forged transaction, aborting");
                     abort();
                     return;
                 }
-            }
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
-            Logger.log(Logger.CONDITIONAL_COLLECT, "Error deserializing block");
-            abort();
-            return;
-        }
-        
-        // Phase 1: Send WRITE messages to all members
-        for (String memberId : memberManager.getMemberLinks().keySet()) {
-            String payload = createAck(value);
-            memberManager.sendToMember(memberId, payload, "WRITE");
-        }
-        
-        // Start a new thread for the write phase
-        Thread writeThread = new Thread(() -> {
-            waitForWrite(value);
+                // Phase 1: Send WRITE messages to all members, or only to the leader with linear votes
+                sendVote(QuorumCertificate.WRITE, value);
+                
+                waitForWrite(value);
+            });
         });
-        writeThread.start();
     }
     
     /**
      * Waits for write acknowledgments
      */
     private void waitForWrite(EpochState value) {
-        try {
-            // Wait for enough write acknowledgments (quorum)
-            for (int i = 0; i < 12; i++) {
-                Thread.sleep(1000);
-                if (writeAcks.size() >= (memberManager.getQuorumSize() - 1)) { break; }
-                Logger.log(Logger.CONDITIONAL_COLLECT, "current write acks: " + writeAcks.size() + "/" + memberManager.getQuorumSize());
-            }
-            
+        // Wait for enough write acknowledgments (quorum)
+        awaitQuorum(QuorumCertificate.WRITE, value, writeAcks, written -> {
             // Check if we got enough acknowledgments
-            if (checkAckQuorum(writeAcks)) {
+            if (written) {
                 Logger.log(Logger.CONDITIONAL_COLLECT, "Received sufficient write acknowledgments");
                 writeAcked = true;
                 
-                // Phase 2: Send ACCEPT messages to all members
-                for (String memberId : memberManager.getMemberLinks().keySet()) {
-                    String payload = createAck(value);
-                    memberManager.sendToMember(memberId, payload, "ACCEPT");
-                }
+                // Phase 2: Send ACCEPT messages to all members, or only to the leader with linear votes
+                sendVote(QuorumCertificate.ACCEPT, value);
+
+                // The value can no longer change unless the epoch aborts, answer the client speculatively
+                epochConsensus.speculate(value);
                 
-                // Start a new thread for the accept phase
-                Thread acceptThread = new Thread(() -> {
-                    waitForAccept(value);
-                });
-                acceptThread.setName("AcceptPhase-" + System.currentTimeMillis());
-                acceptThread.start();
+                waitForAccept(value);
             } else {
                 Logger.log(Logger.CONDITIONAL_COLLECT, "Failed to receive sufficient write acknowledgments");
                 abort();
             }
-        } catch (Exception e) {
-            Logger.log(Logger.CONDITIONAL_COLLECT, "Error waiting for write acknowledgments: " + e.getMessage());
-        }
+        });
     }
     
     /**
      * Waits for accept acknowledgments
      */
     private void waitForAccept(EpochState value) {
-        try {
-            // Wait for enough accept acknowledgments (quorum)
-            Logger.log(Logger.CONDITIONAL_COLLECT, "------------- ACCEPT SIZE: " + acceptAcks.size() + " QUORUM SIZE: " + memberManager.getQuorumSize() + "----------");
-            for (int i = 0; i < 12; i++) {
-                Thread.sleep(1000);
-                if (acceptAcks.size() >= (memberManager.getQuorumSize() - 1)) { break; }
-                Logger.log(Logger.CONDITIONAL_COLLECT, "current accept acks: " + acceptAcks.size() + "/" + memberManager.getQuorumSize());
-            }
-            
+        // Wait for enough accept acknowledgments (quorum)
+        Logger.log(Logger.CONDITIONAL_COLLECT, "------------- ACCEPT SIZE: " + acceptAcks.size() + " QUORUM SIZE: " + memberManager.getQuorumSize() + "----------");
+        awaitQuorum(QuorumCertificate.ACCEPT, value, acceptAcks, accepted -> {
             // Check if we got enough acknowledgments
-            if (checkAckQuorum(acceptAcks)) {
+            if (accepted) {
                 Logger.log(Logger.CONDITIONAL_COLLECT, "Received sufficient accept acknowledgments");
                 acceptAcked = true;
                 
-                // Phase 3: Send DECIDE messages to all members
-                for (String memberId : memberManager.getMemberLinks().keySet()) {
+                // Phase 3: Send DECIDE messages to all members, or only to the leader with linear votes
+                for (String memberId : decideRecipients()) {
                     String payload = createAck(value);
                     memberManager.sendToMember(memberId, payload, "DECIDE");
                     writeAcked = false;
@@ -750,9 +641,7 @@ public class ByzantineConditionalCollect extends ConditionalCollect {
                 Logger.log(Logger.CONDITIONAL_COLLECT, "Failed to receive sufficient accept acknowledgments");
                 abort();
             }
-        } catch (Exception e) {
-            Logger.log(Logger.CONDITIONAL_COLLECT, "Error waiting for accept acknowledgments: " + e.getMessage());
-        }
+        });
     }
     
     /**
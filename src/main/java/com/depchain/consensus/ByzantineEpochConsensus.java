@@ -5,13 +5,19 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import com.depchain.blockchain.Block;
+import com.depchain.blockchain.Receipt;
+import com.depchain.blockchain.Transaction;
 import com.depchain.blockchain.WorldState;
 import com.depchain.networking.AuthenticatedMessage;
 import com.depchain.networking.Message;
 import com.depchain.utils.*;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 public class ByzantineEpochConsensus {
     private ConditionalCollect conditionalCollect;
     private MemberManager memberManager;
@@ -22,6 +28,29 @@ public class ByzantineEpochConsensus {
     private List<String> balanceList = new ArrayList<>();
     private boolean balancesColletected = false;
     private String behavior = "default";
+    private final ValueStore valueStore = new ValueStore();
+
+    // View change
+    private static final long LEADER_TIMEOUT_MS = 30000; // Without leader activity while transactions are pending
+    private static final int MAX_CONSECUTIVE_ABORTS = 3;
+    private volatile long lastLeaderActivity = System.currentTimeMillis();
+    private int consecutiveAborts = 0;
+    private int votedView = 0; // Highest view this member sent a VIEW_CHANGE for
+    private long suspectedAt = 0; // When the failed leader was first suspected, 0 if not failing over
+    private final Map<String, Integer> requestedViews = new HashMap<>(); // Highest view above the current one each member asked for
+    private EventLoop.Timer viewChangeTimer;
+    private final TimeoutPolicy timeoutPolicy;
+    private final EventLoop eventLoop; // Runs every state transition of this member's consensus
+
+    // Fast path
+    private boolean fastPath = false; // Set by a decide, cleared by an abort or a view change
+    private final List<Message> earlyAcks = new ArrayList<>(); // Acks received before the epoch started locally
+
+    // Speculative responses
+    private EpochState speculating; // Value being executed for a speculative report
+    private EpochState speculated; // Value reported to the client library before being decided
+    private final SpeculativeExecutor speculativeExecutor; // Executes values before they are decided
+    private int epochRun = 0; // Changes whenever an epoch starts, decides or aborts, so late callbacks can tell
 
 
     /**
@@ -38,6 +67,9 @@ public class ByzantineEpochConsensus {
         this.memberManager = memberManager;
         this.conditionalCollect = null;
         this.worldState = worldState;
+        this.timeoutPolicy = TimeoutPolicy.load(memberManager.getSetupFilePath());
+        this.eventLoop = new EventLoop("EventLoop-" + memberManager.getName());
+        this.speculativeExecutor = new SpeculativeExecutor(eventLoop);
     }
 
     /**
@@ -53,6 +85,9 @@ public class ByzantineEpochConsensus {
         this.conditionalCollect = null;
         this.memberManager = memberManager;
         this.worldState = worldState;
+        this.timeoutPolicy = TimeoutPolicy.load(memberManager.getSetupFilePath());
+        this.eventLoop = new EventLoop("EventLoop-" + memberManager.getName());
+        this.speculativeExecutor = new SpeculativeExecutor(eventLoop);
     }
 
     /**
@@ -69,6 +104,9 @@ public class ByzantineEpochConsensus {
         this.conditionalCollect = null;
         this.memberManager = memberManager;
         this.worldState = worldState;
+        this.timeoutPolicy = TimeoutPolicy.load(memberManager.getSetupFilePath());
+        this.eventLoop = new EventLoop("EventLoop-" + memberManager.getName());
+        this.speculativeExecutor = new SpeculativeExecutor(eventLoop);
         this.behavior = behavior;
     }
 
@@ -77,6 +115,158 @@ public class ByzantineEpochConsensus {
      */
     public void start() {
         Logger.log(Logger.MEMBER, "Byzantine Epoch Consensus running!");
+        startViewChangeTimer();
+    }
+
+    /**
+     * Starts the timer that suspects the leader when it stops making progress.
+     * It runs on the event loop, checking the leader every second.
+     */
+    public void startViewChangeTimer() {
+        eventLoop.execute(() -> {
+            if (viewChangeTimer == null) {
+                scheduleLeaderCheck();
+            }
+        });
+    }
+
+    private void scheduleLeaderCheck() {
+        viewChangeTimer = eventLoop.schedule(1000, () -> {
+            checkLeader();
+            scheduleLeaderCheck();
+        });
+    }
+
+    /**
+     * Records that the current leader is alive.
+     * Called whenever a message from the leader is received.
+     */
+    public void leaderActivity() {
+        lastLeaderActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Suspects the leader if it left transactions pending for too long, or if too many epochs aborted in a row.
+     */
+    private void checkLeader() {
+        if (memberManager.isLeader()) {
+            return;
+        }
+        boolean silent = member.hasPendingTransactions()
+                && System.currentTimeMillis() - lastLeaderActivity > LEADER_TIMEOUT_MS;
+        if (silent || consecutiveAborts >= MAX_CONSECUTIVE_ABORTS) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Suspecting leader " + memberManager.getLeaderName()
+                    + (silent ? ": no activity" : ": " + consecutiveAborts + " consecutive aborts"));
+            suspectLeader();
+        }
+    }
+
+    /**
+     * Proposes to move to the next view, whose leader is the next member in the rotation.
+     */
+    private void suspectLeader() {
+        int nextView = Math.max(memberManager.getView(), votedView) + 1;
+        if (suspectedAt == 0) {
+            suspectedAt = System.currentTimeMillis();
+        }
+        sendViewChange(nextView);
+        // Give the next leader a full timeout before suspecting it as well
+        lastLeaderActivity = System.currentTimeMillis();
+        consecutiveAborts = 0;
+    }
+
+    private void sendViewChange(int view) {
+        if (view <= votedView) {
+            return;
+        }
+        votedView = view;
+        Logger.log(Logger.EPOCH_CONSENSUS, "Sending VIEW_CHANGE to view " + view);
+        for (String member : memberManager.getMemberLinks().keySet()) {
+            memberManager.sendToMember(member, String.valueOf(view), "VIEW_CHANGE");
+        }
+        addViewChangeVote(view, memberManager.getName());
+    }
+
+    /**
+     * Handles a VIEW_CHANGE message from another member.
+     * A member joins a view change once f + 1 members asked for it, and installs the view on a quorum.
+     * @param message The VIEW_CHANGE message received, its payload is the proposed view
+     */
+    public void handleViewChangeMessage(Message message) {
+        int view;
+        try {
+            view = Integer.parseInt(message.getPayload().trim());
+        } catch (NumberFormatException e) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Invalid VIEW_CHANGE payload from " + message.getSourceId());
+            return;
+        }
+        if (view <= memberManager.getView()) {
+            return;
+        }
+
+        int votes = addViewChangeVote(view, message.getSourceId());
+        Logger.log(Logger.EPOCH_CONSENSUS, "VIEW_CHANGE votes for view " + view + ": " + votes);
+        if (votes >= memberManager.getFaultTolerance() + 1 && view > votedView) {
+            // At least one correct member suspects the leader
+            if (suspectedAt == 0) {
+                suspectedAt = System.currentTimeMillis();
+            }
+            sendViewChange(view);
+        }
+    }
+
+    /**
+     * Counts a member's vote for a view, installing the view once a quorum voted for it.
+     * Only each member's highest request is kept, and it also counts for every lower view, so a
+     * member sending ever higher views holds one entry instead of one per view.
+     * @return The number of members asking for the view or a later one
+     */
+    private int addViewChangeVote(int view, String memberId) {
+        requestedViews.merge(memberId, view, Math::max);
+        int count = 0;
+        for (int requested : requestedViews.values()) {
+            if (requested >= view) {
+                count++;
+            }
+        }
+        if (count >= memberManager.getQuorumSize()) {
+            installView(view);
+        }
+        return count;
+    }
+
+    /**
+     * Installs a new view: the epoch in progress is dropped, the leader of the view takes over
+     * the pending transactions, and the client library is told who the leader is.
+     * @param view The view to install
+     */
+    private void installView(int view) {
+        if (!memberManager.changeView(view)) {
+            return;
+        }
+        requestedViews.values().removeIf(v -> v <= view);
+        conditionalCollect = null;
+        fastPath = false;
+        consecutiveAborts = 0;
+        lastLeaderActivity = System.currentTimeMillis();
+        Logger.log(Logger.EPOCH_CONSENSUS, "Installed view " + view + ", leader is " + memberManager.getLeaderName());
+
+        member.leaderChanged();
+        memberManager.sendToClientLibrary(String.valueOf(view), "NEW_LEADER");
+    }
+
+    /**
+     * Records the failover time once the first value is decided after a view change.
+     */
+    private void progressMade() {
+        consecutiveAborts = 0;
+        lastLeaderActivity = System.currentTimeMillis();
+        if (suspectedAt != 0 && memberManager.getView() > 0) {
+            long failover = System.currentTimeMillis() - suspectedAt;
+            suspectedAt = 0;
+            Metrics.record("failover_ms", failover);
+            Logger.log(Logger.EPOCH_CONSENSUS, "Failover to " + memberManager.getLeaderName() + " took " + failover + "ms");
+        }
     }
 
     /**
@@ -121,6 +311,7 @@ public class ByzantineEpochConsensus {
      * Called when consensus process is aborted to notify the member.
      */
     public void aborted() {
+        fastPath = false;
         try {
             if (memberManager.isLeader()) { 
                 conditionalCollect = null; 
@@ -141,22 +332,182 @@ public class ByzantineEpochConsensus {
 
     /**
      * Handles a PROPOSE message containing a new block to be validated.
+     * While the leader is stable the block goes straight to the write phase, otherwise the full conditional collect runs.
      * @param serializedBlock The serialized block data
      */
     public void handleProposeMessage(String serializedBlock) {
-        if (!this.behavior.equals("default")) {
-            this.conditionalCollect = new ByzantineConditionalCollect(memberManager, this, this.behavior);
-        } else {
-            this.conditionalCollect = new ConditionalCollect(memberManager, this);
-        }
+        startConditionalCollect();
 
-        System.out.println("---------------------- STARTED COND COLLECT with " + this.behavior + " behavior ----------------------");
         System.out.println("ENTERING EPOCH: " + (epochState.getTimeStamp() + 1));
         int currentTimestamp = epochState.getTimeStamp();
         int nextTimestamp;
         nextTimestamp = currentTimestamp + 1;
         EpochState proposedState = new EpochState(nextTimestamp, serializedBlock);
-        conditionalCollect.input(proposedState);
+
+        if (memberManager.isLeader() && fastPath) {
+            // No member can hold a competing value, propose the body directly and skip READ/STATE/COLLECTED
+            Logger.log(Logger.EPOCH_CONSENSUS, "Fast path, proposing epoch " + nextTimestamp);
+            Metrics.increment("fast_path_epochs");
+            valueStore.put(serializedBlock);
+            Map<String, EpochState> proposal = new HashMap<>();
+            proposal.put(memberManager.getName(), proposedState);
+            String payload = ConsensusCodec.encode(proposal, true);
+            for (String member : memberManager.getMemberLinks().keySet()) {
+                memberManager.sendToMember(member, payload, "PROPOSE");
+            }
+            conditionalCollect.fastInput(proposedState);
+        } else {
+            conditionalCollect.input(proposedState);
+        }
+    }
+
+    /**
+     * Handles a fast path PROPOSE message from the leader.
+     * It is only followed while this member is on the fast path as well, otherwise the leader
+     * times out, aborts and falls back to the full conditional collect.
+     * @param message The PROPOSE message received, carrying the epoch state with its body
+     */
+    public void handleFastProposeMessage(Message message) {
+        if (!message.getSourceId().equals(memberManager.getLeaderName())) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Ignoring PROPOSE from " + message.getSourceId() + ", not the leader");
+            return;
+        }
+        if (!fastPath) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Ignoring PROPOSE, not on the fast path");
+            return;
+        }
+
+        EpochState proposedState;
+        try {
+            ConsensusCodec.Reader reader = ConsensusCodec.reader(message.getPayload());
+            proposedState = reader.next() && reader.hasBody() ? reader.toEpochState() : null;
+        } catch (IllegalArgumentException e) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Malformed PROPOSE: " + e.getMessage());
+            return;
+        }
+        if (proposedState == null || !proposedState.hasValue()
+                || proposedState.getTimeStamp() != epochState.getTimeStamp() + 1) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Ignoring PROPOSE for an unexpected epoch");
+            return;
+        }
+
+        valueStore.put(proposedState.getValue());
+        startConditionalCollect();
+        System.out.println("ENTERING EPOCH: " + proposedState.getTimeStamp() + " (fast path)");
+        conditionalCollect.fastInput(proposedState);
+    }
+
+    /**
+     * Creates the conditional collect of a new epoch and hands it the acks that arrived early.
+     */
+    private void startConditionalCollect() {
+        epochRun++;
+        if (!this.behavior.equals("default")) {
+            this.conditionalCollect = new ByzantineConditionalCollect(memberManager, this, this.behavior);
+        } else {
+            this.conditionalCollect = new ConditionalCollect(memberManager, this);
+        }
+        System.out.println("---------------------- STARTED COND COLLECT with " + this.behavior + " behavior ----------------------");
+
+        for (Message ack : earlyAcks) {
+            if (ackTimestamp(ack) != epochState.getTimeStamp() + 1) {
+                continue;
+            }
+            if (ack.getCommand().endsWith("_QC")) {
+                conditionalCollect.appendCertificate(ack);
+            } else {
+                conditionalCollect.appendAck(ack.getPayload(), ack.getCommand());
+            }
+        }
+        earlyAcks.clear();
+    }
+
+    private void bufferEarlyAck(Message message) {
+        if (earlyAcks.size() < 4 * memberManager.getMembers().size()) {
+            earlyAcks.add(message);
+        }
+    }
+
+    private int ackTimestamp(Message ack) {
+        try {
+            if (ack.getCommand().endsWith("_QC")) {
+                return QuorumCertificate.decode(ack.getPayload()).getTimestamp();
+            }
+            ConsensusCodec.Reader reader = ConsensusCodec.reader(ack.getPayload());
+            return reader.next() && reader.hasState() ? reader.timestamp() : -1;
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Handles a VALUE message carrying the body of a proposed value.
+     * The body is stored under its own digest, so a tampered body never matches a vote.
+     * @param message The VALUE message received
+     */
+    public void handleValueMessage(Message message) {
+        String digest = valueStore.put(message.getPayload());
+        Logger.log(Logger.EPOCH_CONSENSUS, "Stored value with digest: " + digest);
+    }
+
+    /**
+     * Handles a FETCH_VALUE message from a member that is missing the body of a value.
+     * @param message The FETCH_VALUE message received, its payload is the digest
+     */
+    public void handleFetchValueMessage(Message message) {
+        String value = valueStore.get(message.getPayload());
+        if (value != null) {
+            memberManager.sendToMember(message.getSourceId(), value, "VALUE");
+        } else {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Unknown value requested by " + message.getSourceId());
+        }
+    }
+
+    /**
+     * Sends the body of a proposed value once to every member.
+     * Every later message of the epoch only refers to it by digest.
+     * @param state The proposed epoch state
+     */
+    public void disseminateValue(EpochState state) {
+        valueStore.put(state.getValue());
+        for (String member : memberManager.getMemberLinks().keySet()) {
+            memberManager.sendToMember(member, state.getValue(), "VALUE");
+        }
+    }
+
+    /**
+     * Makes sure the body of an epoch state is known locally, fetching it from
+     * the leader, and then from every member, if it has not arrived yet.
+     * @param state The epoch state to resolve
+     * @param then Called on the event loop with true if the value body is available, false on timeout
+     */
+    public void resolveValue(EpochState state, Consumer<Boolean> then) {
+        if (state.hasValue()) {
+            valueStore.put(state.getValue());
+            then.accept(true);
+            return;
+        }
+
+        // Ask the leader first, then every member if the leader does not answer in time
+        String digest = state.getDigest();
+        memberManager.sendToMember(memberManager.getLeaderName(), digest, "FETCH_VALUE");
+        timeoutPolicy.when(eventLoop, TimeoutPolicy.VALUE, () -> valueStore.contains(digest), fromLeader -> {
+            if (fromLeader) {
+                state.setValue(valueStore.get(digest));
+                then.accept(true);
+                return;
+            }
+            Logger.log(Logger.EPOCH_CONSENSUS, "Waiting for value: " + digest);
+            for (String member : memberManager.getMemberLinks().keySet()) {
+                memberManager.sendToMember(member, digest, "FETCH_VALUE");
+            }
+            timeoutPolicy.when(eventLoop, TimeoutPolicy.VALUE, () -> valueStore.contains(digest), fromMembers -> {
+                if (fromMembers) {
+                    state.setValue(valueStore.get(digest));
+                }
+                then.accept(fromMembers);
+            });
+        });
     }
 
     /**
@@ -168,9 +519,132 @@ public class ByzantineEpochConsensus {
             Logger.log(Logger.EPOCH_CONSENSUS, "Received ACK message: " + message.getCommand());
             conditionalCollect.appendAck(message.getPayload(), message.getCommand());;
         }
+        else if (ackTimestamp(message) > epochState.getTimeStamp()) {
+            // The sender already started an epoch this member has not seen yet, keep the ack for it
+            bufferEarlyAck(message);
+        }
         else { System.out.println("Received Ack but conditional collect is null"); }
     }
 
+    /**
+     * Handles a signed WRITE_VOTE or ACCEPT_VOTE sent to the leader.
+     * @param message The vote message received
+     */
+    public void handleVoteMessage(Message message) {
+        if (conditionalCollect != null) {
+            conditionalCollect.appendVote(message);
+        }
+        else { System.out.println("Received Vote but conditional collect is null"); }
+    }
+
+    /**
+     * Handles a WRITE_QC or ACCEPT_QC certificate broadcast by the leader.
+     * @param message The certificate message received
+     */
+    public void handleCertificateMessage(Message message) {
+        if (conditionalCollect != null) {
+            conditionalCollect.appendCertificate(message);
+        }
+        else if (ackTimestamp(message) > epochState.getTimeStamp()) {
+            bufferEarlyAck(message);
+        }
+        else { System.out.println("Received Certificate but conditional collect is null"); }
+    }
+
+    /**
+     * Validates a proposed value, then starts executing it while the rest of its epoch runs.
+     * Signatures are verified on a worker thread, the execution is the one installed at decide.
+     * If the epoch aborted or moved on while the signatures were being verified, nothing happens.
+     * @param state The epoch state being agreed on
+     * @param block The block of the value
+     * @param then Called on the event loop with true if no transaction of the block is forged
+     */
+    public void validate(EpochState state, Block block, Consumer<Boolean> then) {
+        WorldState committed = worldState;
+        int run = epochRun;
+        eventLoop.offload(() -> committed.areAllTransactionsSigned(block), signed -> {
+            if (run != epochRun) {
+                Logger.log(Logger.EPOCH_CONSENSUS, "Epoch " + state.getTimeStamp() + " ended while validating its value");
+                return;
+            }
+            if (!Boolean.TRUE.equals(signed)) {
+                then.accept(false);
+                return;
+            }
+            speculativeExecutor.execute(state.getDigest(), block, worldState);
+            then.accept(true);
+        });
+    }
+
+    /**
+     * Reports the tentative results of a value to the client library once its WRITE quorum formed.
+     * The results come from the speculative execution started when the value was validated,
+     * the real state only changes at decide.
+     * @param state The epoch state whose WRITE quorum formed
+     */
+    public void speculate(EpochState state) {
+        Block block = speculativeExecutor.getBlock(state.getDigest());
+        try {
+            if (block == null) {
+                block = Block.deserializeFromBase64(state.getValue());
+            }
+        } catch (Exception e) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Error speculating on value: " + e.getMessage());
+            return;
+        }
+
+        speculating = state;
+        speculativeExecutor.execute(state.getDigest(), block, worldState);
+        speculativeExecutor.whenExecuted(state.getDigest(), execution -> {
+            // Only report if the epoch neither decided nor aborted while the block was executing
+            if (execution == null || speculating != state) {
+                return;
+            }
+            speculating = null;
+            speculated = state;
+            JSONObject report = createReport(state, execution.getBlock());
+            report.put("results", execution.getResults());
+            memberManager.sendToClientLibrary(report.toString(), "SPECULATIVE");
+        });
+    }
+
+    /**
+     * Tells the client library a value was decided, or rolled back if it was aborted after being reported.
+     * A decided value also reports the transactions that failed to execute, and why.
+     */
+    private void report(EpochState state, Block block, String command, List<Receipt> receipts) {
+        try {
+            if (block == null) {
+                block = Block.deserializeFromBase64(state.getValue());
+            }
+            JSONObject report = createReport(state, block);
+            if (receipts != null) {
+                JSONObject failed = new JSONObject();
+                for (Receipt receipt : receipts) {
+                    if (!receipt.isSuccess()) {
+                        failed.put(receipt.getTransactionHash(), receipt.getReason());
+                    }
+                }
+                report.put("failed", failed);
+            }
+            memberManager.sendToClientLibrary(report.toString(), command);
+        } catch (Exception e) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Error reporting " + command + ": " + e.getMessage());
+        }
+    }
+
+    private JSONObject createReport(EpochState state, Block block) {
+        JSONArray transactions = new JSONArray();
+        for (Transaction transaction : block.getTransactions()) {
+            transactions.put(transaction.getHash());
+        }
+        JSONObject report = new JSONObject();
+        report.put("epoch", state.getTimeStamp());
+        report.put("digest", state.getDigest());
+        report.put("transactions", transactions);
+        return report;
+    }
+
     /**
      * Handles a COLLECTED message from the leader.
      * @param message The COLLECTED message received
@@ -188,12 +662,32 @@ public class ByzantineEpochConsensus {
      */
     public void decide(EpochState state){
         Logger.log(Logger.EPOCH_CONSENSUS, "Deciding on value: " + state);
+        epochRun++;
         if (!memberManager.isLeader()) { 
             conditionalCollect = null;
             System.out.println("---------------------- CLOSED COND COLLECT ----------------------");}
 
-        member.addToBlockchain(state.getValue());
+        // The block joins the chain now, the world state once its speculative execution finishes
+        Block block = speculativeExecutor.getBlock(state.getDigest());
+        try {
+            if (block == null) {
+                block = Block.deserializeFromBase64(state.getValue());
+            }
+            member.appendBlock(block);
+            Block decidedBlock = block;
+            speculativeExecutor.decided(state.getDigest(), execution -> {
+                List<Receipt> receipts = member.commitBlock(decidedBlock, execution);
+                report(state, decidedBlock, "COMMITTED", receipts);
+            });
+        } catch (Exception e) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Error deciding on value: " + e.getMessage());
+        }
         setState(state);
+        speculating = null;
+        speculated = null;
+        timeoutPolicy.decided();
+        fastPath = true;
+        progressMade();
     }
 
     /**
@@ -213,6 +707,17 @@ public class ByzantineEpochConsensus {
      */
     public void abort() {
         Logger.log(Logger.EPOCH_CONSENSUS, "Aborting consensus process");
+        epochRun++;
+        consecutiveAborts++;
+        timeoutPolicy.aborted();
+        fastPath = false;
+        EpochState rolledBack = speculated;
+        speculating = null;
+        speculated = null;
+        speculativeExecutor.abort();
+        if (rolledBack != null) {
+            report(rolledBack, null, "ROLLBACK", null);
+        }
         if (!memberManager.isLeader()) { 
             conditionalCollect = null; 
             System.out.println("---------------------- ABORTED COND COLLECT ----------------------");
@@ -240,28 +745,22 @@ public class ByzantineEpochConsensus {
     }
 
     /**
-     * Waits for balances to be collected from members.
+     * Waits on the event loop for balances to be collected from members.
      * @param senderId The ID of the client that requested the balance
      */
     public void waitForBalances(String senderId){
-        for (int i = 0; i < 12; i++) {
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            if (balancesColletected) { break; }
-        }
-        if (balancesColletected) {
-            String consensusBalance = checkConsensus(balanceList);
-            if (consensusBalance != null) {
-                memberManager.sendToClientLibrary(consensusBalance, "BALANCE");
+        timeoutPolicy.when(eventLoop, TimeoutPolicy.BALANCES, () -> balancesColletected, collected -> {
+            if (collected) {
+                String consensusBalance = checkConsensus(balanceList);
+                if (consensusBalance != null) {
+                    memberManager.sendToClientLibrary(consensusBalance, "BALANCE");
+                } else {
+                    System.out.println("No consensus reached on world state.");
+                }
             } else {
-                System.out.println("No consensus reached on world state.");
+                System.out.println("World states not collected in time.");
             }
-        } else {
-            System.out.println("World states not collected in time.");
-        }
+        });
     }
 
     /**
@@ -309,12 +808,17 @@ public class ByzantineEpochConsensus {
 
     /**
      * Initiates the balance consensus process by requesting balances from all members.
+     * Every member answers from its snapshot at the leader's block height, so members that
+     * already committed later blocks still agree.
      * @param senderId The ID of the client that requested the balance
      */
     public void getBalanceConsensus(String senderId) {
         try {
+            JSONObject request = new JSONObject();
+            request.put("clientName", senderId);
+            request.put("height", worldState.getHeight());
             for (String member : memberManager.getMemberLinks().keySet()) {
-                memberManager.sendToMember(member, senderId, "GET_BALANCE");
+                memberManager.sendToMember(member, request.toString(), "GET_BALANCE");
             }
             waitForBalances(senderId);
         } catch (Exception e) {
@@ -344,4 +848,16 @@ public class ByzantineEpochConsensus {
     public EpochState getState() {
         return epochState;
     }
+
+    public TimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    public EventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    public ValueStore getValueStore() {
+        return valueStore;
+    }
 }
\ No newline at end of file
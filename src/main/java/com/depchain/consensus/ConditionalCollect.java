@@ -2,6 +2,7 @@ package com.depchain.consensus;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import org.json.JSONObject;
 
@@ -17,8 +18,8 @@ import com.depchain.utils.*;
 public class ConditionalCollect {
     private final MemberManager memberManager;
     private Map <String, EpochState>  collected = new HashMap<>();
-    private Map <String, String> writeAcks = new HashMap<>();
-    private Map <String, String> acceptAcks = new HashMap<>();
+    private Map <String, EpochState> writeAcks = new HashMap<>();
+    private Map <String, EpochState> acceptAcks = new HashMap<>();
     private List<Message> quorumDecideMessages;
     private List<Message> quorumAbortMessages;
     private boolean isCollected = false;
@@ -26,6 +27,10 @@ public class ConditionalCollect {
     private boolean acceptAcked = false;
     private final String name;
     private final ByzantineEpochConsensus epochConsensus;
+    private final QuorumCertificate.Collector writeVotes = new QuorumCertificate.Collector(QuorumCertificate.WRITE);
+    private final QuorumCertificate.Collector acceptVotes = new QuorumCertificate.Collector(QuorumCertificate.ACCEPT);
+    private volatile QuorumCertificate writeCertificate;
+    private volatile QuorumCertificate acceptCertificate;
     
     /**
      * Creates a new ConditionalCollect instance
@@ -142,8 +147,8 @@ public class ConditionalCollect {
                 continue;
             }
             
-            String value = state.getValue();
-            valueCounts.put(value, valueCounts.getOrDefault(value, 0) + 1);
+            String digest = state.getDigest();
+            valueCounts.put(digest, valueCounts.getOrDefault(digest, 0) + 1);
         }
         
         
@@ -178,16 +183,16 @@ public class ConditionalCollect {
      * @param Acks The map of acknowledgments to check
      * @return True if quorum is reached, false otherwise
      */
-    public boolean checkAckQuorum(Map<String, String> Acks) {
+    public boolean checkAckQuorum(Map<String, EpochState> Acks) {
         if (Acks.size() < (memberManager.getQuorumSize() - 1)) { // - 1 because we count with ourself
             return false;
         }
         
         // Count occurrences of each value
-        Map<String, Integer> valueCounts = new HashMap<>();
+        Map<EpochState, Integer> valueCounts = new HashMap<>();
         
-        // Group by value and count
-        for (String ack : Acks.values()) {
+        // Group by (timestamp, digest) and count
+        for (EpochState ack : Acks.values()) {
             // Handle null values
             if (ack == null) {
                 valueCounts.put(null, valueCounts.getOrDefault(null, 0) + 1);
@@ -218,11 +223,11 @@ public class ConditionalCollect {
     public void appendAck(String ackPayload, String ackType) {
         if (ackType.equals("ACCEPT")) {
             if (acceptAcked) { return; }
-            Map<String, String> ack = parseAck(ackPayload);
+            Map<String, EpochState> ack = parseAck(ackPayload);
             acceptAcks.putAll(ack);
         } else if (ackType.equals("WRITE")) {
             if (writeAcked) { return; }
-            Map<String, String> ack = parseAck(ackPayload);
+            Map<String, EpochState> ack = parseAck(ackPayload);
             writeAcks.putAll(ack);
         }
     }
@@ -230,59 +235,27 @@ public class ConditionalCollect {
     /**
      * Parses an acknowledgment payload into a map.
      * 
-     * @param ackPayload The serialized acknowledgment payload
-     * @return Map containing the parsed acknowledgments
+     * @param ackPayload The encoded acknowledgment payload
+     * @return Map containing the parsed acknowledgments, empty if the payload is malformed
      */
-    public Map<String, String> parseAck(String ackPayload) {
-        Map<String, String> result = new HashMap<>();
-        
-        if (ackPayload != null && !ackPayload.isEmpty()) {
-            // Split the payload by newline to handle multiple entries
-            String[] entries = ackPayload.split("\n");
-            
-            for (String entry : entries) {
-                // Check if the entry contains a colon
-                if (entry.contains(":")) {
-                    // Split by the first colon to separate member name and value
-                    String[] parts = entry.split(":", 2);
-                    
-                    if (parts.length == 2) {
-                        String memberName = parts[0].trim();
-                        String value = parts[1].trim();
-                        
-                        // Extract the value from between square brackets if present
-                        if (value.startsWith("[") && value.endsWith("]")) {
-                            value = value.substring(1, value.length() - 1);
-                        }
-                        
-                        result.put(memberName, value);
-                    }
-                }
-            }
+    public Map<String, EpochState> parseAck(String ackPayload) {
+        try {
+            return ConsensusCodec.decode(ackPayload);
+        } catch (IllegalArgumentException e) {
+            Logger.log(Logger.CONDITIONAL_COLLECT, "Error parsing ack: " + e.getMessage());
+            return new HashMap<>();
         }
-        
-        return result;
     }
 
     /**
      * Creates an acknowledgment payload for a given epoch state.
+     * The vote only carries the member id, the timestamp and the digest, never the value body.
      * 
      * @param value The epoch state to acknowledge
-     * @return The formatted acknowledgment string
+     * @return The encoded acknowledgment payload
      */
     public String createAck(EpochState value) {
-        // Format as "membername: [value]"
-        StringBuilder builder = new StringBuilder();
-        builder.append(name).append(": [");
-        
-        // Add the value if it's not null
-        if (value != null) {
-            builder.append(value.toString());
-        }
-        
-        builder.append("]");
-        
-        return builder.toString();
+        return ConsensusCodec.encode(name, value);
     }
     
     /**
@@ -296,15 +269,14 @@ public class ConditionalCollect {
             // If this member is the leader
             if (memberManager.isLeader()) {
                 collected.put(memberManager.getName(), message);
+                // Disseminate the value body once, every later message only carries its digest
+                epochConsensus.disseminateValue(message);
                 // Send READ message to all members
                 for (String member : memberManager.getMemberLinks().keySet()) {
                     memberManager.sendToMember(member, "", "READ");
                 }
                 // wait for the STATE replies from each member
-                Thread collectionThread = new Thread(() -> {
                 waitForStates();
-                });
-                collectionThread.start();
 
             } 
             else {
@@ -313,11 +285,8 @@ public class ConditionalCollect {
                 Logger.log(Logger.CONDITIONAL_COLLECT, "Sending state to leader");
                 memberManager.sendToMember(memberManager.getLeaderName(), statePayload, "STATE");
                 
-                // Start waitForCollected in a new thread
-                Thread collectionThread = new Thread(() -> {
-                    waitForStates();
-                });
-                collectionThread.start();
+                // Wait for the COLLECTED message from the leader
+                waitForStates();
             }
         } catch (Exception e) {
             Logger.log(Logger.CONDITIONAL_COLLECT, "Error in ConditionalCollect.input: " + e.getMessage());
@@ -326,21 +295,168 @@ public class ConditionalCollect {
 
     }
 
+    /**
+     * Sends this member's WRITE or ACCEPT vote for a value.
+     * With linear votes the signed vote only goes to the leader, otherwise the ack is broadcast to every member.
+     * The vote is signed on a worker thread, the event loop keeps running meanwhile.
+     * 
+     * @param phase The phase voted on, WRITE or ACCEPT
+     * @param value The epoch state voted for
+     */
+    protected void sendVote(String phase, EpochState value) {
+        if (!memberManager.isLinearVotes()) {
+            for (String memberId : memberManager.getMemberLinks().keySet()) {
+                memberManager.sendToMember(memberId, createAck(value), phase);
+            }
+            return;
+        }
+
+        epochConsensus.getEventLoop().offload(() -> QuorumCertificate.vote(memberManager, phase, value), vote -> {
+            if (vote == null) {
+                Logger.log(Logger.CONDITIONAL_COLLECT, "Could not sign " + phase + " vote");
+                return;
+            }
+            if (memberManager.isLeader()) {
+                addVote(vote);
+            } else {
+                memberManager.sendToMember(memberManager.getLeaderName(), vote.encode(), phase + "_VOTE");
+            }
+        });
+    }
+
+    /**
+     * Handles a signed vote sent to the leader.
+     * 
+     * @param message The WRITE_VOTE or ACCEPT_VOTE message
+     */
+    public void appendVote(Message message) {
+        QuorumCertificate vote;
+        try {
+            vote = QuorumCertificate.decode(message.getPayload());
+        } catch (IllegalArgumentException e) {
+            Logger.log(Logger.CONDITIONAL_COLLECT, "Error parsing vote: " + e.getMessage());
+            return;
+        }
+        String sourceId = message.getSourceId();
+        epochConsensus.getEventLoop().offload(() -> QuorumCertificate.Collector.verify(vote, sourceId, memberManager), valid -> {
+            if (Boolean.TRUE.equals(valid)) {
+                addVote(vote);
+            } else {
+                Logger.log(Logger.CONDITIONAL_COLLECT, "Invalid vote from " + sourceId);
+            }
+        });
+    }
+
+    private void addVote(QuorumCertificate vote) {
+        QuorumCertificate.Collector collector = QuorumCertificate.WRITE.equals(vote.getPhase()) ? writeVotes : acceptVotes;
+        QuorumCertificate certificate = collector.add(vote, memberManager);
+        if (certificate == null) {
+            return;
+        }
+
+        Logger.log(Logger.CONDITIONAL_COLLECT, "Quorum certificate for " + certificate.getPhase() + " with " + certificate.getSignatureCount() + " signatures");
+        String payload = certificate.encode();
+        for (String member : memberManager.getMemberLinks().keySet()) {
+            memberManager.sendToMember(member, payload, certificate.getPhase() + "_QC");
+        }
+        setCertificate(certificate);
+    }
+
+    /**
+     * Handles a quorum certificate broadcast by the leader.
+     * The certificate replaces counting individual acks, so it is only accepted with n - f valid signatures.
+     * 
+     * @param message The WRITE_QC or ACCEPT_QC message
+     */
+    public void appendCertificate(Message message) {
+        if (!message.getSourceId().equals(memberManager.getLeaderName())) {
+            Logger.log(Logger.CONDITIONAL_COLLECT, "Ignoring certificate from " + message.getSourceId() + ", not the leader");
+            return;
+        }
+        QuorumCertificate certificate;
+        try {
+            certificate = QuorumCertificate.decode(message.getPayload());
+        } catch (IllegalArgumentException e) {
+            Logger.log(Logger.CONDITIONAL_COLLECT, "Error parsing certificate: " + e.getMessage());
+            return;
+        }
+        epochConsensus.getEventLoop().offload(() -> certificate.isValid(memberManager), valid -> {
+            if (Boolean.TRUE.equals(valid)) {
+                setCertificate(certificate);
+            } else {
+                Logger.log(Logger.CONDITIONAL_COLLECT, "Invalid " + certificate.getPhase() + " certificate");
+            }
+        });
+    }
+
+    private void setCertificate(QuorumCertificate certificate) {
+        if (QuorumCertificate.WRITE.equals(certificate.getPhase())) {
+            writeCertificate = certificate;
+        } else if (QuorumCertificate.ACCEPT.equals(certificate.getPhase())) {
+            acceptCertificate = certificate;
+        }
+    }
+
+    /**
+     * Waits, without blocking the event loop, for the quorum of a phase.
+     * With linear votes that is the quorum certificate from the leader, otherwise enough acks.
+     * 
+     * @param phase The phase, WRITE or ACCEPT
+     * @param value The epoch state this member voted for
+     * @param acks The acks received for the phase
+     * @param then Called with true if the quorum was reached in time
+     */
+    protected void awaitQuorum(String phase, EpochState value, Map<String, EpochState> acks, Consumer<Boolean> then) {
+        boolean write = QuorumCertificate.WRITE.equals(phase);
+        String timeoutPhase = write ? TimeoutPolicy.WRITE : TimeoutPolicy.ACCEPT;
+        if (memberManager.isLinearVotes()) {
+            epochConsensus.getTimeoutPolicy().when(epochConsensus.getEventLoop(), timeoutPhase,
+                    () -> (write ? writeCertificate : acceptCertificate) != null, arrived -> {
+                QuorumCertificate certificate = write ? writeCertificate : acceptCertificate;
+                then.accept(certificate != null && certificate.certifies(value));
+            });
+        } else {
+            epochConsensus.getTimeoutPolicy().when(epochConsensus.getEventLoop(), timeoutPhase,
+                    () -> acks.size() >= (memberManager.getQuorumSize() - 1), arrived -> {
+                Logger.log(Logger.CONDITIONAL_COLLECT, "current " + phase + " acks: " + acks.size() + "/" + memberManager.getQuorumSize());
+                then.accept(checkAckQuorum(acks));
+            });
+        }
+    }
+
+    /**
+     * Gets the members a DECIDE is sent to.
+     * With linear votes only the leader, which is the one counting them, otherwise every member.
+     * 
+     * @return The names of the recipients
+     */
+    protected Collection<String> decideRecipients() {
+        if (memberManager.isLinearVotes() && !memberManager.isLeader()) {
+            return Collections.singletonList(memberManager.getLeaderName());
+        }
+        return memberManager.getMemberLinks().keySet();
+    }
+
+    /**
+     * Inputs a value through the fast path, straight into the write phase.
+     * Used while the leader is stable, when no member can hold a competing value.
+     * 
+     * @param value The epoch state proposed by the leader
+     */
+    public void fastInput(EpochState value) {
+        consensusLoop(value);
+    }
+
     /**
      * Waits for states to be collected from all members.
      * If successful, initiates the consensus process.
      * If timeout occurs, aborts the consensus.
      */
     protected void waitForStates() {
-        try {
-            // Wait for all members to send their state
-            for (int i = 0; i < 12; i++) {
-                Thread.sleep(1000);
-                if (isCollected) { break; }
-                Logger.log(Logger.CONDITIONAL_COLLECT, "Waiting for states");
-                Logger.log(Logger.CONDITIONAL_COLLECT, "Quorum size: " + memberManager.getQuorumSize());
-                Logger.log(Logger.CONDITIONAL_COLLECT, "Collected size: " + collected.size());
-            }
+        // Wait for all members to send their state
+        Logger.log(Logger.CONDITIONAL_COLLECT, "Waiting for states, quorum size: " + memberManager.getQuorumSize());
+        epochConsensus.getTimeoutPolicy().when(epochConsensus.getEventLoop(), TimeoutPolicy.STATES, () -> isCollected, collectedInTime -> {
+            Logger.log(Logger.CONDITIONAL_COLLECT, "Collected size: " + collected.size());
 
             if (isCollected) {
 
@@ -362,9 +478,7 @@ public class ConditionalCollect {
                 Logger.log(Logger.CONDITIONAL_COLLECT, "Timeout waiting for states");
                 abort(); // Send ABORT message to all members
             }
-        } catch (Exception e) {
-            Logger.log(Logger.CONDITIONAL_COLLECT, "Error collecting States, aborting: " + e.getMessage() + e.getStackTrace() + e.getCause());
-        }
+        });
     }
 
     /**
@@ -436,36 +550,40 @@ public class ConditionalCollect {
 
     /**
      * Initiates the consensus loop for a given epoch state.
-     * Validates the block and starts the write phase if valid.
+     * Resolves the value body from its digest, validates the block and starts the write phase if valid.
      * 
      * @param value The epoch state to reach consensus on
      */
     private void consensusLoop(EpochState value) {
-        try {
-            Block block = new Block();
-            block = Block.deserializeFromBase64(value.getValue());
-            if (!epochConsensus.getWorldState().areAllTransactionsValid(block)) {
-                Logger.log(Logger.CONDITIONAL_COLLECT, "Block is not valid, aborting");
+        // Votes only carry the digest, make sure the block body is known before validating it
+        epochConsensus.resolveValue(value, resolved -> {
+            if (!resolved) {
+                Logger.log(Logger.CONDITIONAL_COLLECT, "Value body not available, aborting");
                 abort();
                 return;
             }
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
-            Logger.log(Logger.CONDITIONAL_COLLECT, "Error deserializing block");
-            abort();
-            return;
-        }
-        // Phase 1: Send WRITE messages to all members
-        for (String memberId : memberManager.getMemberLinks().keySet()) {
-            String payload = createAck(value);
-            memberManager.sendToMember(memberId, payload, "WRITE");
-        }
-        
-        // Start a new thread for the write phase
-        Thread writeThread = new Thread(() -> {
-            waitForWrite(value);
+            Block block;
+            try {
+                block = Block.deserializeFromBase64(value.getValue());
+            } catch (Exception e) {
+                System.out.println(e.getMessage());
+                Logger.log(Logger.CONDITIONAL_COLLECT, "Error deserializing block");
+                abort();
+                return;
+            }
+            // Signatures are verified off the loop, then the block executes while the WRITE and ACCEPT rounds run
+            epochConsensus.validate(value, block, valid -> {
+                if (!valid) {
+                    Logger.log(Logger.CONDITIONAL_COLLECT, "Block has a forged transaction, aborting");
+                    abort();
+                    return;
+                }
+                // Phase 1: Send WRITE messages to all members, or only to the leader with linear votes
+                sendVote(QuorumCertificate.WRITE, value);
+
+                waitForWrite(value);
+            });
         });
-        writeThread.start();
     }
     
     /**
@@ -475,38 +593,25 @@ public class ConditionalCollect {
      * @param value The epoch state that members are acknowledging
      */
     private void waitForWrite(EpochState value) {
-        try {
-            // Wait for enough write acknowledgments (quorum)
-            for (int i = 0; i < 12; i++) {
-                Thread.sleep(1000);
-                if (writeAcks.size() >= (memberManager.getQuorumSize() - 1)) { break; }
-                Logger.log(Logger.CONDITIONAL_COLLECT, "current write acks: " + writeAcks.size() + "/" + memberManager.getQuorumSize());
-            }
-            
+        // Wait for enough write acknowledgments (quorum)
+        awaitQuorum(QuorumCertificate.WRITE, value, writeAcks, written -> {
             // Check if we got enough acknowledgments
-            if (checkAckQuorum(writeAcks)) {
+            if (written) {
                 Logger.log(Logger.CONDITIONAL_COLLECT, "Received sufficient write acknowledgments");
                 writeAcked = true;
                 
-                // Phase 2: Send ACCEPT messages to all members
-                for (String memberId : memberManager.getMemberLinks().keySet()) {
-                    String payload = createAck(value);
-                    memberManager.sendToMember(memberId, payload, "ACCEPT");
-                }
+                // Phase 2: Send ACCEPT messages to all members, or only to the leader with linear votes
+                sendVote(QuorumCertificate.ACCEPT, value);
+
+                // The value can no longer change unless the epoch aborts, answer the client speculatively
+                epochConsensus.speculate(value);
                 
-                // Start a new thread for the accept phase
-                Thread acceptThread = new Thread(() -> {
-                    waitForAccept(value);
-                });
-                acceptThread.setName("AcceptPhase-" + System.currentTimeMillis());
-                acceptThread.start();
+                waitForAccept(value);
             } else {
                 Logger.log(Logger.CONDITIONAL_COLLECT, "Failed to receive sufficient write acknowledgments");
                 abort();
             }
-        } catch (Exception e) {
-            Logger.log(Logger.CONDITIONAL_COLLECT, "Error waiting for write acknowledgments: " + e.getMessage());
-        }
+        });
     }
     
     /**
@@ -516,23 +621,17 @@ public class ConditionalCollect {
      * @param value The epoch state that members are accepting
      */
     private void waitForAccept(EpochState value) {
-        try {
-            // Wait for enough accept acknowledgments (quorum)
-            Logger.log(Logger.CONDITIONAL_COLLECT, "------------- ACCEPT SIZE: " + acceptAcks.size() + " QUORUM SIZE: " + memberManager.getQuorumSize() + "----------");
-            for (int i = 0; i < 12; i++) {
-                Thread.sleep(1000);
-                if (acceptAcks.size() >= (memberManager.getQuorumSize() - 1)) { break; }
-                Logger.log(Logger.CONDITIONAL_COLLECT, "current accept acks: " + acceptAcks.size() + "/" + memberManager.getQuorumSize());
-            }
-            
+        // Wait for enough accept acknowledgments (quorum)
+        Logger.log(Logger.CONDITIONAL_COLLECT, "------------- ACCEPT SIZE: " + acceptAcks.size() + " QUORUM SIZE: " + memberManager.getQuorumSize() + "----------");
+        awaitQuorum(QuorumCertificate.ACCEPT, value, acceptAcks, accepted -> {
             // Check if we got enough acknowledgments
-            if (checkAckQuorum(acceptAcks)) {
+            if (accepted) {
                 Logger.log(Logger.CONDITIONAL_COLLECT, "Received sufficient accept acknowledgments");
                 acceptAcked = true;
 
             
-            // Phase 3: Send DECIDE messages to all members
-            for (String memberId : memberManager.getMemberLinks().keySet()) {
+            // Phase 3: Send DECIDE messages to all members, or only to the leader with linear votes
+            for (String memberId : decideRecipients()) {
                 String payload = createAck(value);
                 memberManager.sendToMember(memberId, payload, "DECIDE");
                 writeAcked = false;
@@ -558,114 +657,37 @@ public class ConditionalCollect {
                 abort();
 
             }
-        } catch (Exception e) {
-            Logger.log(Logger.CONDITIONAL_COLLECT, "Error waiting for accept acknowledgments: " + e.getMessage());
-        }
+        });
     }
 
     /**
-     * Creates a formatted string payload from the collected map of epoch states.
+     * Creates an encoded payload from the collected map of epoch states.
      * Used for transmitting state information between members.
      * 
      * @param collected The map of collected epoch states
-     * @return String representation in format "key1: [timestamp, value1], key2: [timestamp2, value2], ..."
+     * @return The encoded payload, see {@link ConsensusCodec}
      */
     private String createCollectedPayload(Map<String, EpochState> collected) {
-        StringBuilder payload = new StringBuilder();
-        boolean first = true;
-        
-        for (Map.Entry<String, EpochState> entry : collected.entrySet()) {
-            if (!first) {
-                payload.append(", ");
-            } else {
-                first = false;
-            }
-            
-            payload.append(entry.getKey())
-                .append(": [");
-                
-            // Check if the value is null
-            if (entry.getValue() != null) {
-                payload.append(entry.getValue().toString());
-            }
-            
-            payload.append("]");
-        }
-        
-        if (payload.toString().isEmpty()) {
-            return memberManager.getName() + ": []";
+        if (collected.isEmpty()) {
+            return ConsensusCodec.encode(memberManager.getName(), null);
         }
-        
-        return payload.toString();
+        return ConsensusCodec.encode(collected, false);
     }
 
     /**
-     * Parses a formatted collected payload back into a HashMap of epoch states.
-     * Handles complex parsing of nested brackets and state values.
+     * Parses an encoded collected payload back into a HashMap of epoch states.
      * 
-     * @param payload String in format "key1: [timstamp1, value1], key2: [timestamp2, value2], ..."
-     * @return HashMap containing the parsed member-epochstate pairs
+     * @param payload The encoded payload, see {@link ConsensusCodec}
+     * @return HashMap containing the parsed member-epochstate pairs, holding only the digest of each value
      */
     protected Map<String, EpochState> parseCollectedPayload(String payload) {
-        Map<String, EpochState> collected = new HashMap<>();
         Logger.log(Logger.CONDITIONAL_COLLECT, "Parsing collected payload");
-        
-        // Handle empty payload
-        if (payload == null || payload.trim().isEmpty()) {
-            return collected;
-        }
-        
-        int startIdx = 0;
-        while (startIdx < payload.length()) {
-            // Find the key part
-            int keyEnd = payload.indexOf(": [", startIdx);
-            if (keyEnd == -1) break;
-            
-            String key = payload.substring(startIdx, keyEnd);
-            
-            // Find the closing bracket that matches our opening bracket
-            int openBracket = keyEnd + 2; // position of '['
-            int closeBracket = openBracket + 1;
-            int bracketCount = 1;
-            
-            while (closeBracket < payload.length() && bracketCount > 0) {
-                if (payload.charAt(closeBracket) == '[') bracketCount++;
-                else if (payload.charAt(closeBracket) == ']') bracketCount--;
-                closeBracket++;
-            }
-            
-            if (bracketCount != 0) break; // Malformed input
-            
-            // Extract content between brackets
-            String content = payload.substring(openBracket + 1, closeBracket - 1);
-            
-            // Handle empty brackets
-            if (content.isEmpty()) {
-                collected.put(key, null);
-            } else {
-                // For non-empty content, find the first comma to separate timestamp and value
-                int firstComma = content.indexOf(", ");
-                if (firstComma != -1) {
-                    try {
-                        int timestamp = Integer.parseInt(content.substring(0, firstComma));
-                        String value = content.substring(firstComma + 2);
-                        collected.put(key, new EpochState(timestamp, value));
-                    } catch (NumberFormatException e) {
-                        Logger.log(Logger.CONDITIONAL_COLLECT, "Error parsing timestamp: " + e.getMessage());
-                    }
-                }
-            }
-            
-            // Move to next entry
-            startIdx = closeBracket;
-            // Skip comma and space if present
-            if (startIdx < payload.length() && payload.charAt(startIdx) == ',') {
-                startIdx += 2; // Skip ", "
-            }
+        try {
+            return ConsensusCodec.decode(payload);
+        } catch (IllegalArgumentException e) {
+            Logger.log(Logger.CONDITIONAL_COLLECT, "Error parsing collected payload: " + e.getMessage());
+            return new HashMap<>();
         }
-        
-        Logger.log(Logger.CONDITIONAL_COLLECT, "Parsed collected payload");
-        return collected;
     }
     
     /**
@@ -0,0 +1,300 @@
+package com.depchain.consensus;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary encoding of the STATE, COLLECTED and ACK payloads exchanged by the conditional collect.
+ *
+ * A payload is a list of entries, each one length prefixed so that no value can be confused with
+ * the framing:
+ *
+ *   byte  version
+ *   short entry count                        (at most 65535)
+ *   entry:
+ *     byte     member id length, member id (UTF-8, at most 255 bytes)
+ *     byte     flags (HAS_STATE, HAS_BODY)
+ *     int      timestamp                      (if HAS_STATE)
+ *     byte[32] SHA-256 digest of the value    (if HAS_STATE)
+ *     int      body length, body (UTF-8)      (if HAS_BODY)
+ *
+ * The links only carry strings, so the encoded bytes travel as Base64.
+ */
+public final class ConsensusCodec {
+    private static final byte VERSION = 1;
+    private static final int DIGEST_SIZE = 32;
+    private static final byte HAS_STATE = 0x1;
+    private static final byte HAS_BODY = 0x2;
+    private static final int MAX_MEMBER_ID_LENGTH = 0xff; // Unsigned byte prefix
+    private static final int MAX_ENTRIES = 0xffff; // Unsigned short count
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ConsensusCodec() {
+    }
+
+    /**
+     * Encodes a single member's state, used for STATE and ACK payloads.
+     *
+     * @param memberId The member the state belongs to
+     * @param state The epoch state, or null if the member has no state
+     * @return The encoded payload
+     */
+    public static String encode(String memberId, EpochState state) {
+        Map<String, EpochState> single = new HashMap<>();
+        single.put(memberId, state);
+        return encode(single, false);
+    }
+
+    /**
+     * Encodes a map of member states, used for COLLECTED payloads.
+     *
+     * @param states The states of each member
+     * @param withBodies Whether value bodies known locally are included
+     * @return The encoded payload
+     * @throws IllegalArgumentException If there are too many entries, a member id is too long or a digest is malformed
+     */
+    public static String encode(Map<String, EpochState> states, boolean withBodies) {
+        if (states.size() > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Too many consensus payload entries: " + states.size());
+        }
+        // Member ids and bodies are encoded once, to size the buffer and then to fill it
+        byte[][] memberIds = new byte[states.size()][];
+        byte[][] bodies = new byte[states.size()][];
+        int size = 3;
+        int index = 0;
+        for (Map.Entry<String, EpochState> entry : states.entrySet()) {
+            memberIds[index] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            if (memberIds[index].length > MAX_MEMBER_ID_LENGTH) {
+                throw new IllegalArgumentException("Member id longer than " + MAX_MEMBER_ID_LENGTH + " bytes: " + entry.getKey());
+            }
+            size += 2 + memberIds[index].length;
+            EpochState state = entry.getValue();
+            if (hasState(state)) {
+                size += 4 + DIGEST_SIZE;
+                if (withBodies && state.hasValue()) {
+                    bodies[index] = state.getValue().getBytes(StandardCharsets.UTF_8);
+                    size += 4 + bodies[index].length;
+                }
+            }
+            index++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.putShort((short) states.size());
+        index = 0;
+        for (EpochState state : states.values()) {
+            byte[] memberId = memberIds[index];
+            byte[] body = bodies[index++];
+            buffer.put((byte) memberId.length);
+            buffer.put(memberId);
+
+            if (!hasState(state)) {
+                buffer.put((byte) 0);
+                continue;
+            }
+
+            buffer.put(body != null ? (byte) (HAS_STATE | HAS_BODY) : HAS_STATE);
+            buffer.putInt(state.getTimeStamp());
+            buffer.put(fromHex(state.getDigest()));
+            if (body != null) {
+                buffer.putInt(body.length);
+                buffer.put(body);
+            }
+        }
+
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decodes a payload into a map of member states.
+     *
+     * @param payload The encoded payload
+     * @return The states of each member, members without state map to null
+     * @throws IllegalArgumentException If the payload is malformed
+     */
+    public static Map<String, EpochState> decode(String payload) {
+        Map<String, EpochState> states = new HashMap<>();
+        Reader reader = reader(payload);
+        while (reader.next()) {
+            states.put(reader.memberId(), reader.toEpochState());
+        }
+        return states;
+    }
+
+    /**
+     * Creates a reader over an encoded payload.
+     *
+     * @param payload The encoded payload
+     * @return A reader positioned before the first entry
+     * @throws IllegalArgumentException If the payload is not valid Base64 or has an unknown version
+     */
+    public static Reader reader(String payload) {
+        if (payload == null || payload.isEmpty()) {
+            throw new IllegalArgumentException("Empty consensus payload");
+        }
+        return new Reader(ByteBuffer.wrap(Base64.getDecoder().decode(payload)));
+    }
+
+    private static boolean hasState(EpochState state) {
+        return state != null && state.getDigest() != null;
+    }
+
+    /**
+     * Reads the entries of a payload in place.
+     * Digests and bodies are exposed as read-only slices of the decoded buffer, nothing is copied
+     * until a field is converted into a String.
+     */
+    public static final class Reader {
+        private final ByteBuffer buffer;
+        private int remaining;
+        private int memberOffset;
+        private int memberLength;
+        private byte flags;
+        private int timestamp;
+        private int digestOffset;
+        private int bodyOffset;
+        private int bodyLength;
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            try {
+                byte version = buffer.get();
+                if (version != VERSION) {
+                    throw new IllegalArgumentException("Unknown consensus payload version: " + version);
+                }
+                this.remaining = buffer.getShort() & 0xffff;
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Malformed consensus payload", e);
+            }
+        }
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return True if there is an entry to read, false at the end of the payload
+         * @throws IllegalArgumentException If the entry is truncated
+         */
+        public boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+
+            try {
+                memberLength = buffer.get() & 0xff;
+                memberOffset = buffer.position();
+                skip(memberLength);
+
+                flags = buffer.get();
+                bodyLength = -1;
+                if ((flags & HAS_STATE) != 0) {
+                    timestamp = buffer.getInt();
+                    digestOffset = buffer.position();
+                    skip(DIGEST_SIZE);
+                    if ((flags & HAS_BODY) != 0) {
+                        bodyLength = buffer.getInt();
+                        bodyOffset = buffer.position();
+                        skip(bodyLength);
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Malformed consensus payload", e);
+            }
+            return true;
+        }
+
+        private void skip(int length) {
+            if (length < 0 || length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            buffer.position(buffer.position() + length);
+        }
+
+        public String memberId() {
+            return new String(buffer.array(), memberOffset, memberLength, StandardCharsets.UTF_8);
+        }
+
+        public boolean hasState() {
+            return (flags & HAS_STATE) != 0;
+        }
+
+        public boolean hasBody() {
+            return bodyLength >= 0;
+        }
+
+        public int timestamp() {
+            return timestamp;
+        }
+
+        public ByteBuffer digest() {
+            return slice(digestOffset, DIGEST_SIZE);
+        }
+
+        public ByteBuffer body() {
+            return hasBody() ? slice(bodyOffset, bodyLength) : null;
+        }
+
+        /**
+         * Converts the current entry into an epoch state.
+         *
+         * @return The epoch state, or null if the member has no state
+         */
+        public EpochState toEpochState() {
+            if (!hasState()) {
+                return null;
+            }
+            if (hasBody()) {
+                String body = new String(buffer.array(), bodyOffset, bodyLength, StandardCharsets.UTF_8);
+                EpochState state = new EpochState(timestamp, body);
+                // Never trust a body that does not hash to the digest it was sent with
+                return state.getDigest().equals(toHex(digest())) ? state : EpochState.fromDigest(timestamp, toHex(digest()));
+            }
+            return EpochState.fromDigest(timestamp, toHex(digest()));
+        }
+
+        private ByteBuffer slice(int offset, int length) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.limit(offset + length);
+            return view.slice().asReadOnlyBuffer();
+        }
+    }
+
+    static String toHex(ByteBuffer bytes) {
+        char[] hex = new char[bytes.remaining() * 2];
+        for (int i = 0; bytes.hasRemaining(); i += 2) {
+            int b = bytes.get() & 0xff;
+            hex[i] = HEX_DIGITS[b >>> 4];
+            hex[i + 1] = HEX_DIGITS[b & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Parses a digest written as hex.
+     *
+     * @param hex The digest, exactly {@value #DIGEST_SIZE} bytes in hex
+     * @return The digest
+     * @throws IllegalArgumentException If the digest has another length or is not hex
+     */
+    static byte[] fromHex(String hex) {
+        if (hex == null || hex.length() != 2 * DIGEST_SIZE) {
+            throw new IllegalArgumentException("Invalid digest length: " + hex);
+        }
+        byte[] bytes = new byte[DIGEST_SIZE];
+        for (int i = 0; i < DIGEST_SIZE; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid digest: " + hex);
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+}
@@ -1,18 +1,57 @@
 package com.depchain.consensus;
 
+import java.util.Objects;
+
 // EPochState is a class that represents the state of the epoch
+// Votes only carry the timestamp and the digest, the value itself is resolved through the ValueStore
 class EpochState {
     private int timeStamp;
     private String value;
-    
+    private String digest;
+
     public EpochState(int timestamp, String value) {
         this.timeStamp = timestamp;
         this.value = value;
+        this.digest = ValueStore.digest(value);
+    }
+
+    private EpochState(int timestamp, String value, String digest) {
+        this.timeStamp = timestamp;
+        this.value = value;
+        this.digest = digest;
+    }
+
+    /**
+     * Creates an epoch state that only knows the digest of its value.
+     *
+     * @param timestamp The timestamp of the state
+     * @param digest The digest of the value
+     * @return The epoch state without the value body
+     */
+    public static EpochState fromDigest(int timestamp, String digest) {
+        return new EpochState(timestamp, null, digest);
+    }
+
+    public boolean hasValue() {
+        return value != null && !value.isEmpty();
     }
 
     @Override
     public String toString() {
-        return timeStamp + ", " + value;
+        return timeStamp + ", " + digest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        EpochState that = (EpochState) o;
+        return timeStamp == that.timeStamp && Objects.equals(digest, that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timeStamp, digest);
     }
 
     //--- Getters and Setters ---
@@ -25,12 +64,16 @@ class EpochState {
         return value;
     }
 
+    public String getDigest() {
+        return digest;
+    }
+
     public void setTimeStamp(int timeStamp) {
         this.timeStamp = timeStamp;
     }
 
     public void setValue(String value) {
         this.value = value;
+        this.digest = ValueStore.digest(value);
     }
 }
-
@@ -0,0 +1,232 @@
+package com.depchain.consensus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.depchain.utils.Logger;
+
+/**
+ * Single-threaded event loop that owns the consensus state of a member.
+ *
+ * Link delivery and worker threads only enqueue tasks on a lock-free queue. The loop thread runs
+ * them one at a time, together with timers and phase waits, so consensus state is never touched
+ * by two threads and needs no locking. Signing, signature verification and block execution run
+ * on a worker pool and hand their results back to the loop.
+ */
+public class EventLoop {
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>(); // Loop thread only
+    private final List<Watch> watches = new ArrayList<>(); // Loop thread only
+    private final ExecutorService workers;
+    private final Thread thread;
+    private volatile boolean running = false;
+    private long sequence = 0;
+
+    public EventLoop(String name) {
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.workers = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+            Thread worker = new Thread(runnable, name + "-worker");
+            worker.setDaemon(true);
+            return worker;
+        });
+    }
+
+    public synchronized void start() {
+        if (!running) {
+            running = true;
+            thread.start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        workers.shutdownNow();
+    }
+
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Runs a task on the loop thread.
+     *
+     * @param task The task to run
+     */
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        if (!inLoop()) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Runs a task on the loop thread after a delay.
+     *
+     * @param delayMs The delay in milliseconds
+     * @param task The task to run
+     * @return The timer, which can be cancelled
+     */
+    public Timer schedule(long delayMs, Runnable task) {
+        Timer timer = new Timer(System.currentTimeMillis() + delayMs, task);
+        if (inLoop()) {
+            addTimer(timer);
+        } else {
+            execute(() -> addTimer(timer));
+        }
+        return timer;
+    }
+
+    /**
+     * Waits, without blocking the loop, until a condition holds or a timeout expires.
+     * The condition is checked on the loop thread after every task, so it sees every state change.
+     *
+     * @param condition The condition to wait for
+     * @param timeoutMs The timeout in milliseconds
+     * @param then Called on the loop thread with true if the condition holds, false on timeout
+     */
+    public void when(BooleanSupplier condition, long timeoutMs, Consumer<Boolean> then) {
+        Watch watch = new Watch(condition, System.currentTimeMillis() + timeoutMs, then);
+        if (inLoop()) {
+            watches.add(watch);
+        } else {
+            execute(() -> watches.add(watch));
+        }
+    }
+
+    /**
+     * Runs CPU heavy work, such as signatures or block execution, on the worker pool.
+     *
+     * @param work The work to run, off the loop thread
+     * @param then Called on the loop thread with the result, or null if the work failed
+     */
+    public <T> void offload(Supplier<T> work, Consumer<T> then) {
+        workers.execute(() -> {
+            T result = null;
+            try {
+                result = work.get();
+            } catch (Exception e) {
+                Logger.log(Logger.EPOCH_CONSENSUS, "Error in offloaded work: " + e.getMessage());
+            }
+            T finalResult = result;
+            execute(() -> then.accept(finalResult));
+        });
+    }
+
+    private void addTimer(Timer timer) {
+        timer.sequence = sequence++;
+        timers.add(timer);
+    }
+
+    private void run() {
+        while (running) {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                runSafely(task);
+                checkWatches();
+            }
+
+            long now = System.currentTimeMillis();
+            while (!timers.isEmpty() && timers.peek().deadline <= now) {
+                Timer timer = timers.poll();
+                if (!timer.cancelled) {
+                    runSafely(timer.task);
+                    checkWatches();
+                }
+            }
+            checkWatches();
+
+            if (tasks.isEmpty()) {
+                long next = nextDeadline();
+                if (next == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    long waitMs = next - System.currentTimeMillis();
+                    if (waitMs > 0) {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(waitMs));
+                    }
+                }
+            }
+        }
+    }
+
+    private void checkWatches() {
+        if (watches.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Watch watch : watches.toArray(new Watch[0])) {
+            boolean satisfied = watch.condition.getAsBoolean();
+            if (satisfied || now >= watch.deadline) {
+                watches.remove(watch);
+                runSafely(() -> watch.then.accept(satisfied));
+            }
+        }
+    }
+
+    private long nextDeadline() {
+        // Cancelled timers stay queued until their deadline, waking the loop once for nothing
+        long next = timers.isEmpty() ? Long.MAX_VALUE : timers.peek().deadline;
+        for (Watch watch : watches) {
+            next = Math.min(next, watch.deadline);
+        }
+        return next;
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Error in event loop task: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A task scheduled on the loop.
+     */
+    public static class Timer implements Comparable<Timer> {
+        private final long deadline;
+        private final Runnable task;
+        private long sequence;
+        private volatile boolean cancelled = false;
+
+        private Timer(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            int byDeadline = Long.compare(deadline, other.deadline);
+            return byDeadline != 0 ? byDeadline : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class Watch {
+        private final BooleanSupplier condition;
+        private final long deadline;
+        private final Consumer<Boolean> then;
+
+        private Watch(BooleanSupplier condition, long deadline, Consumer<Boolean> then) {
+            this.condition = condition;
+            this.deadline = deadline;
+            this.then = then;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.depchain.consensus;
 
 import com.depchain.utils.Logger;
+import com.depchain.utils.Metrics;
 import com.depchain.networking.Message;
 import com.depchain.blockchain.Transaction;
 import com.depchain.blockchain.WorldState;
@@ -14,24 +15,18 @@ import java.util.UUID;
 
 import org.json.JSONObject;
 
-import java.util.Timer;
-import java.util.TimerTask;
 import java.io.IOException;
 
 public class LeaderRole implements Role {
     private Member member;
     private Queue<Block> blockQueue;
-    private List<Transaction> transactionPool;
-    private Timer blockTimer;
-    private static final int MAX_TRANSACTIONS_PER_BLOCK = 3;
-    private static final long BLOCK_TIMEOUT_MS = 12000; // 12 seconds
-    private boolean timerRunning = false;
+    private EventLoop.Timer blockTimer; // Runs on the member's event loop
+    private final BatchingPolicy batchingPolicy;
 
     public LeaderRole(Member member) {
         this.member = member;
         this.blockQueue = new LinkedList<>();
-        this.transactionPool = new ArrayList<>();
-        this.blockTimer = new Timer("BlockTimer", true);
+        this.batchingPolicy = BatchingPolicy.load(member.getMemberManager().getSetupFilePath());
     }
 
     @Override
@@ -64,6 +59,26 @@ public class LeaderRole implements Role {
             case "ABORT":
                 handleAbortMessage(message);
                 break;
+            case "VALUE":
+                handleValueMessage(message);
+                break;
+            case "FETCH_VALUE":
+                handleFetchValueMessage(message);
+                break;
+            case "VIEW_CHANGE":
+                handleViewChangeMessage(message);
+                break;
+            case "PROPOSE":
+                handleProposeMessage(message);
+                break;
+            case "WRITE_VOTE":
+            case "ACCEPT_VOTE":
+                handleVoteMessage(message);
+                break;
+            case "WRITE_QC":
+            case "ACCEPT_QC":
+                handleCertificateMessage(message);
+                break;
             case "CHECK_BALANCE":
                 handleCheckBalanceMessage(message);
                 break;
@@ -81,82 +96,65 @@ public class LeaderRole implements Role {
     }
 
     /**
-     * Adds a transaction to the pool and starts a timer if needed.
-     * If the pool reaches MAX_TRANSACTIONS_PER_BLOCK, a block is created immediately.
+     * Takes over the transactions left pending by the previous leader.
+     * Every member keeps the transactions it received in its mempool, so they only need to be proposed.
      */
-    private synchronized void addTransactionToPool(Transaction transaction) {
-        // Add the transaction to the pool
-        transactionPool.add(transaction);
-        Logger.log(Logger.LEADER_ERRORS, "Added transaction to pool. Current pool size: " + transactionPool.size());
-    
-        // Start timer if it's not already running and this is the first transaction
-        if (!timerRunning && transactionPool.size() == 1) {
-            startBlockTimer();
-        }
-    
-        // If we have enough transactions, cancel the timer and create a block immediately
-        if (transactionPool.size() >= MAX_TRANSACTIONS_PER_BLOCK) {
-            // Cancel the current timer
-            blockTimer.cancel();
-            blockTimer = new Timer("BlockTimer");  // Create a new timer for future use            
-            Logger.log(Logger.LEADER_ERRORS, "Transaction pool reached max size (" + MAX_TRANSACTIONS_PER_BLOCK + "). Canceling timer and creating block...");
-            createAndProposeBlock();
-        }
+    public void takeOverMempool() {
+        cutBlockIfReady();
     }
 
     /**
-     * Starts a timer that will create a block after BLOCK_TIMEOUT_MS milliseconds
-     * if the pool hasn't reached MAX_TRANSACTIONS_PER_BLOCK by then.
+     * Cuts a block when the consensus is idle and either the mempool fills a block or the oldest
+     * transaction waited for the latency target. Otherwise waits for whichever comes first.
      */
-    private void startBlockTimer() {
-        timerRunning = true;
-        Logger.log(Logger.LEADER_ERRORS, "Starting block timer for " + BLOCK_TIMEOUT_MS + "ms");
-        
-        blockTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                synchronized (LeaderRole.this) {
-                    // Only create a block if there are transactions in the pool
-                    if (!transactionPool.isEmpty()) {
-                        Logger.log(Logger.LEADER_ERRORS, "Block timer expired. Creating block with " + transactionPool.size() + " transactions");
-                        createAndProposeBlock();
-                    } else {
-                        Logger.log(Logger.LEADER_ERRORS, "Block timer expired but transaction pool is empty");
-                        timerRunning = false;
-                    }
-                }
-            }
-        }, BLOCK_TIMEOUT_MS);
+    private void cutBlockIfReady() {
+        Mempool mempool = member.getMempool();
+        if (!mempool.hasReady() || member.isWorking()) {
+            // A busy pipeline keeps batching, the block is cut when the epoch ends
+            return;
+        }
+
+        long waited = System.currentTimeMillis() - mempool.getOldestReadyArrival(); // Of what is left after the last block
+        if (batchingPolicy.isFull(mempool) || waited >= batchingPolicy.getLatencyTargetMs()) {
+            createAndProposeBlock();
+        } else if (blockTimer == null) {
+            blockTimer = member.getConsensus().getEventLoop().schedule(batchingPolicy.getLatencyTargetMs() - waited, () -> {
+                blockTimer = null;
+                cutBlockIfReady();
+            });
+        }
     }
 
     /**
-     * Creates a block with the transactions in the pool and proposes it to the blockchain.
+     * Creates a block with the best ready transactions of the mempool and proposes it to the blockchain.
      */
-    private synchronized void createAndProposeBlock() {
-        if (transactionPool.isEmpty()) {
-            Logger.log(Logger.LEADER_ERRORS, "Cannot create block: transaction pool is empty");
-            timerRunning = false;
+    private void createAndProposeBlock() {
+        Mempool mempool = member.getMempool();
+        if (!mempool.hasReady()) {
+            Logger.log(Logger.LEADER_ERRORS, "Cannot create block: no transaction is ready");
             return;
         }
         
         try {
             // Cancel the timer if it's running
-            timerRunning = false;
+            if (blockTimer != null) {
+                blockTimer.cancel();
+                blockTimer = null;
+            }
             
             // Get the current blockchain state
             String previousHash = "";
             previousHash = member.getPreviousHash();
             
-            // Create a new block with the transactions from the pool
-            Block block = new Block(previousHash, new ArrayList<>(transactionPool));
-            
-            // Clear the transaction pool
-            transactionPool.clear();
-            
-            
+            // Create a new block with the next batch of transactions from the mempool
+            long delay = System.currentTimeMillis() - mempool.getOldestReadyArrival();
+            List<Transaction> batch = mempool.takeBatch(batchingPolicy);
+            Block block = new Block(previousHash, batch);
+            Metrics.record("batch_size", batch.size());
+            Metrics.record("batching_delay_ms", delay);
             
             // Propose the block to the blockchain
-            Logger.log(Logger.LEADER_ERRORS, "Proposing block: " + block.toString());
+            Logger.log(Logger.LEADER_ERRORS, "Proposing block with " + batch.size() + " transactions, " + mempool.size() + " pending: " + block.toString());
             ProposeBlock(block);
         } 
         catch (Exception e) {
@@ -199,6 +197,36 @@ public class LeaderRole implements Role {
         // Leader-specific read message handling
     }
 
+    @Override
+    public void handleValueMessage(Message message) {
+        member.getConsensus().handleValueMessage(message);
+    }
+
+    @Override
+    public void handleFetchValueMessage(Message message) {
+        member.getConsensus().handleFetchValueMessage(message);
+    }
+
+    @Override
+    public void handleViewChangeMessage(Message message) {
+        member.getConsensus().handleViewChangeMessage(message);
+    }
+
+    @Override
+    public void handleVoteMessage(Message message) {
+        member.getConsensus().handleVoteMessage(message);
+    }
+
+    @Override
+    public void handleCertificateMessage(Message message) {
+        member.getConsensus().handleCertificateMessage(message);
+    }
+
+    @Override
+    public void handleProposeMessage(Message message) {
+        // Leader-specific propose handling, the leader is the one proposing
+    }
+
     public void handleBalanceMessage(Message message) {
         Logger.log(Logger.MEMBER, "Received BALANCE message: " + message.getPayload());
         member.getConsensus().addToBalanceList(message.getPayload());
@@ -221,15 +249,8 @@ public class LeaderRole implements Role {
         Logger.log(Logger.LEADER_ERRORS, "Client Name: " + clientName);
         Logger.log(Logger.LEADER_ERRORS, "Signature: " + signature);
         
-        // Create and start a new thread to handle the balance consensus
-        Thread balanceThread = new Thread(() -> {
-            try {
-                member.getConsensus().getBalanceConsensus(clientName);
-            } catch (Exception e) {
-                Logger.log(Logger.LEADER_ERRORS, "Error in balance consensus thread: " + e.getMessage());
-            }
-        });
-        balanceThread.start();
+        // The balance consensus waits on the event loop, it does not block this handler
+        member.getConsensus().getBalanceConsensus(clientName);
     }
 
     @Override
@@ -249,7 +270,7 @@ public class LeaderRole implements Role {
                 throw new IOException("Deserialization resulted in null object.");
             }
             System.out.println(transaction.toString());
-            addTransactionToPool(transaction);
+            member.admitTransaction(transaction, this::cutBlockIfReady);
         } catch (Exception e) {
             Logger.log(Logger.CLIENT_LIBRARY, "Error: Failed to deserialize transaction: " + e.getMessage());
         }
@@ -306,11 +327,15 @@ public class LeaderRole implements Role {
             // No more messages to process, set working to false
             member.setWorking(false);
             Logger.log(Logger.LEADER_ERRORS, "No more messages in queue, setting working to false");
+            // The pipeline has capacity again, propose what was batched during the epoch
+            cutBlockIfReady();
         }
     }
 
     @Override
     public void aborted() {            
+        // The aborted block's transactions can go into the next one
+        member.getMempool().requeueInFlight();
         // Check if there are any queued messages
         if (!blockQueue.isEmpty()) {
             // Take the next message from the queue and process it
@@ -329,13 +354,15 @@ public class LeaderRole implements Role {
             // No more messages to process, set working to false
             member.setWorking(false);
             Logger.log(Logger.LEADER_ERRORS, "No more messages in queue, setting working to false");
+            // The pipeline has capacity again, propose what was batched during the epoch
+            cutBlockIfReady();
         }
     }
 
     // Helper methods for testing/debugging
     
     public boolean isTimerRunning() {
-        return timerRunning;
+        return blockTimer != null;
     }
     
     /**
@@ -345,6 +372,7 @@ public class LeaderRole implements Role {
     public void shutdown() {
         if (blockTimer != null) {
             blockTimer.cancel();
+            blockTimer = null;
         }
     }
 
@@ -359,8 +387,8 @@ public class LeaderRole implements Role {
 
     //--- Getters and Setters ---
 
-    public synchronized int getTransactionPoolSize() {
-        return transactionPool.size();
+    public int getTransactionPoolSize() {
+        return member.getMempool().size();
     }
     
     public int getQueueSize() {
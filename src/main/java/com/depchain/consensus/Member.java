@@ -1,5 +1,6 @@
 package com.depchain.consensus;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.io.File;
@@ -17,6 +18,9 @@ import com.depchain.utils.*;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.depchain.blockchain.*;
+
+import org.json.JSONObject;
+
 public class Member {
     private Role currentRole;
     protected Map<String, SecretKey> memberKeys;
@@ -29,10 +33,12 @@ public class Member {
     private ByzantineEpochConsensus epochConsensus;
 
     private WorldState worldState;
+    private final Mempool mempool; // Received but not yet decided
 
     // Configuration file paths (consider making these constants or configurable)
     private static final String GENESIS_ACCOUNTS_FILE_PATH = "src/main/resources/genesis_accounts.json";
     private static final String GENESIS_BLOCK_RESOURCE_NAME = "src/main/resources/genesisBlock.json"; // Classpath resource
+    private static final int METRICS_INTERVAL = 100; // Decided blocks between two logs of the metrics
 
     public Member(String name) throws Exception {
         this(name, "default");
@@ -41,6 +47,7 @@ public class Member {
     public Member(String name, String behavior) throws Exception {
         this.name = name; 
         this.memberManager = new MemberManager(name);
+        this.mempool = Mempool.load(memberManager.getSetupFilePath());
         this.working = false;
         this.blockchain = new ArrayList<>();
         System.out.println("Member created: " + name + " with behavior: " + behavior);
@@ -62,6 +69,11 @@ public class Member {
             // Load the WorldState using the classpath resource name and the map
             WorldState worldState = new WorldState();
             this.worldState = worldState;
+            AccountStore accountStore = AccountStore.load(memberManager.getSetupFilePath());
+            if (accountStore != null) {
+                worldState.useAccountStore(accountStore);
+            }
+            worldState.useContractExecutor(ContractExecutor.load(memberManager.getSetupFilePath()));
             worldState.loadGenesisState();
             
             // Print loaded accounts
@@ -121,13 +133,20 @@ public class Member {
                         List<Transaction> transactions = new ArrayList<>();
                         JsonNode transactionsNode = root.get("transactions");
                         if (transactionsNode != null && transactionsNode.isArray()) {
+                            Map<String, Long> nextNonces = new HashMap<>(); // For blocks saved before transactions had nonces
                             for (JsonNode txNode : transactionsNode) {
+                                String sender = txNode.get("sender").asText();
+                                AccountState account = worldState.getAccount(sender);
+                                long nextNonce = nextNonces.getOrDefault(sender, account == null ? 0 : account.getNonce());
+                                long nonce = txNode.has("nonce") ? txNode.get("nonce").asLong() : nextNonce;
+                                nextNonces.put(sender, nonce + 1);
                                 Transaction transaction = new Transaction(
-                                    txNode.get("sender").asText(),
+                                    sender,
                                     txNode.get("receiver").asText(),
-                                    txNode.get("amount").asDouble(),
+                                    Amounts.parse(txNode.get("amount").asText()),
                                     txNode.get("data").asText(),
-                                    txNode.get("signature").asText()
+                                    txNode.get("signature").asText(),
+                                    nonce
                                 );
                                 transactions.add(transaction);
                             }
@@ -146,7 +165,7 @@ public class Member {
                     }
                 });
     
-            System.out.println("WorldState recovered: " + worldState);
+            System.out.println("WorldState recovered: " + worldState.summary());
         } catch (IOException e) {
             System.err.println("Failed to read blocks directory: " + e.getMessage());
         }
@@ -207,6 +226,8 @@ public class Member {
 
     public void start() throws Exception {
         currentRole.start();
+        epochConsensus.getEventLoop().start();
+        epochConsensus.startViewChangeTimer();
         while (true) {
             waitForMessages();
         }
@@ -220,8 +241,23 @@ public class Member {
         currentRole.aborted();
     }
 
+    /**
+     * Hands a received message to the event loop, which processes every message of this member in arrival order.
+     * 
+     * @param sourceId The member the message came from
+     * @param message The received message
+     */
     public void processMessage(String sourceId, AuthenticatedMessage message) throws Exception {
-        currentRole.processMessage(sourceId, message);
+        epochConsensus.getEventLoop().execute(() -> {
+            try {
+                if (sourceId.equals(memberManager.getLeaderName())) {
+                    epochConsensus.leaderActivity();
+                }
+                currentRole.processMessage(sourceId, message);
+            } catch (Exception e) {
+                Logger.log(Logger.MEMBER, "Error processing " + message.getCommand() + " from " + sourceId + ": " + e.getMessage());
+            }
+        });
     }
 
     public void processClientCommand(String command, String payload) throws Exception {
@@ -240,25 +276,156 @@ public class Member {
         this.currentRole = newRole;
     }
 
+    /**
+     * Switches role after a view change.
+     * A member that becomes leader takes over every transaction it has received and not seen decided.
+     */
+    public void leaderChanged() {
+        setWorking(false);
+        // A block proposed in the previous view will not be decided in this one
+        mempool.requeueInFlight();
+        if (memberManager.isLeader() && !(currentRole instanceof LeaderRole)) {
+            LeaderRole leaderRole = new LeaderRole(this);
+            changeRole(leaderRole);
+            Logger.log(Logger.MEMBER, "Became leader, taking over " + mempool.size() + " pending transactions");
+            leaderRole.takeOverMempool();
+        } else if (!memberManager.isLeader() && currentRole instanceof LeaderRole) {
+            Logger.log(Logger.MEMBER, "No longer the leader, new leader is " + memberManager.getLeaderName());
+            ((LeaderRole) currentRole).shutdown();
+            changeRole(new MemberRole(this));
+        }
+    }
+
+    /**
+     * Records a transaction received from the client library until it is decided.
+     * 
+     * @param transaction The received transaction
+     * @return True if the transaction is new, false if it is already pending
+     */
+    public boolean addPendingTransaction(Transaction transaction) {
+        return mempool.add(transaction);
+    }
+
+    /**
+     * Checks a transaction received from the client library before it enters the mempool.
+     * Both accounts must exist, the signature must be the sender's, and the sender's balance must
+     * cover the amount on top of what its pending transactions already spend.
+     * A rejected transaction never reaches a block, the client library is told why instead.
+     * Runs on the event loop, the signature is verified on a worker thread.
+     * 
+     * @param transaction The received transaction
+     * @param admitted Called on the event loop once the transaction is in the mempool
+     */
+    public void admitTransaction(Transaction transaction, Runnable admitted) {
+        if (mempool.contains(transaction.getHash())) {
+            Logger.log(Logger.MEMBER, "Dropping duplicate transaction " + transaction.getHash());
+            return;
+        }
+        String sender = String.valueOf(transaction.getSender());
+        PublicKey publicKey = worldState.getPublicKey(sender);
+        if (publicKey == null) {
+            rejectTransaction(transaction, "unknown sender " + sender);
+            return;
+        }
+
+        epochConsensus.getEventLoop().offload(() -> transaction.isSignedBy(publicKey), signed -> {
+            if (!Boolean.TRUE.equals(signed)) {
+                rejectTransaction(transaction, "invalid signature");
+                return;
+            }
+            String reason = worldState.checkAdmission(transaction, mempool.getPendingSpend(sender), mempool.getPendingCount(sender));
+            if (reason != null) {
+                rejectTransaction(transaction, reason);
+                return;
+            }
+            if (mempool.add(transaction)) {
+                admitted.run();
+            }
+        });
+    }
+
+    /**
+     * Tells the client library a transaction was refused, and which nonce its sender should use next.
+     */
+    private void rejectTransaction(Transaction transaction, String reason) {
+        Metrics.increment("admission_rejected");
+        Logger.log(Logger.MEMBER, "Rejected transaction " + transaction.getHash() + ": " + reason);
+        String sender = String.valueOf(transaction.getSender());
+        JSONObject rejection = new JSONObject();
+        rejection.put("transaction", transaction.getHash());
+        rejection.put("reason", reason);
+        AccountState account = worldState.getAccount(sender);
+        if (account != null) {
+            rejection.put("sender", sender);
+            rejection.put("nonce", account.getNonce() + mempool.getPendingCount(sender));
+        }
+        memberManager.sendToClientLibrary(rejection.toString(), "REJECTED");
+    }
+
+    public boolean hasPendingTransactions() {
+        return !mempool.isEmpty();
+    }
+
+    public Mempool getMempool() {
+        return mempool;
+    }
+
     public Message handleNewMessage(String sourceId, AuthenticatedMessage message) {
         return memberManager.handleNewMessage(sourceId, message);
     }
 
-    // Appends a value to the blockchain
-    public void addToBlockchain(String serializedBlock) {
-        Block block;
+    // Appends a value to the blockchain, returning the receipt of each of its transactions
+    public List<Receipt> addToBlockchain(String serializedBlock) {
         try {
-            block = Block.deserializeFromBase64(serializedBlock);
-            blockchain.add(block);
-            this.worldState.applyBlock(block);
-            saveBlock(block);
+            Block block = Block.deserializeFromBase64(serializedBlock);
+            appendBlock(block);
+            return commitBlock(block, null);
         } catch (IOException e) {
             e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Appends a decided block to the chain. The world state follows in {@link #commitBlock}, once
+     * the block is executed, and until then its transactions stay pending in the mempool, so
+     * admission still counts their nonces and spending.
+     * 
+     * @param block The decided block
+     */
+    public void appendBlock(Block block) {
+        mempool.markDecided(block.getTransactions());
+        blockchain.add(block);
+    }
+
+    /**
+     * Brings the world state past a decided block.
+     * If the block was executed speculatively, the layer holding its post-state is committed
+     * into the world state instead of executing the block again.
+     * Its transactions leave the mempool only then, as the senders' nonces and balances move past them.
+     * 
+     * @param block The decided block
+     * @param execution The speculative execution of the block, or null to execute it now
+     * @return The receipt of each transaction of the block
+     */
+    public List<Receipt> commitBlock(Block block, SpeculativeExecutor.Execution execution) {
+        List<Receipt> receipts;
+        if (execution != null) {
+            execution.getPostState().commit();
+            receipts = execution.getReceipts();
+        } else {
+            receipts = this.worldState.applyBlock(block);
         }
+        mempool.removeCommitted(block.getTransactions());
+        saveBlock(block);
         System.out.println("----------------------- BLOCKCHAIN UPDATED ----------------------");
-        Logger.log(Logger.MEMBER, "Updated blockchain: " + blockchain);
-        Logger.log(Logger.MEMBER, "Updated world state: " + this.worldState.toString());
+        Logger.log(Logger.MEMBER, "Updated blockchain: " + blockchain.size() + " blocks, last " + block);
+        Logger.log(Logger.MEMBER, "Updated world state: " + this.worldState.summary());
         System.out.println("-----------------------  ----------------------");
+        if (blockchain.size() % METRICS_INTERVAL == 0) {
+            Metrics.log(); // At the METRICS level, so --log can turn it off
+        }
+        return receipts;
     }
 
     public void handleDecideMessage(AuthenticatedMessage message) throws Exception {
@@ -6,6 +6,8 @@ import java.nio.file.Paths;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.crypto.SecretKey;
 
@@ -21,10 +23,18 @@ public class MemberManager {
     private AuthenticatedPerfectLinks clientLibraryLink;                          //The authenticated link to the client library
 
     private String leaderName;
+    private String initialLeaderName;                                                // The leader of view 0, from setup.json
+    private int view = 0;                                                           // The current view, each view has one leader
+    private boolean linearVotes = false;                                            // Votes go to the leader, which broadcasts quorum certificates
     private String name;                                                            //The name of the member
     private KeyManager keyManager;                                                  //Holds the information about the public and private keys of the members
     private String setupFilePath = "src/main/resources/setup.json";                 // Shared Resources Path
     private int clientLibraryPort;
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> { // Encrypts and sends off the event loop, in order
+        Thread thread = new Thread(runnable, "LinkSender");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public MemberManager(String name) {
         try {
@@ -35,7 +45,7 @@ public class MemberManager {
         }
     }
 
-    public boolean isLeader() {
+    public synchronized boolean isLeader() {
         return name.equals(leaderName);
     }
 
@@ -83,38 +93,42 @@ public class MemberManager {
      * @throws Exception If sending fails
      */
     public void sendToClientLibrary(String payload, String command) {
-        try {
-            if (clientLibraryLink == null) {
-                Logger.log(Logger.MEMBER, "No link to client library");
-                return;
+        sender.execute(() -> {
+            try {
+                if (clientLibraryLink == null) {
+                    Logger.log(Logger.MEMBER, "No link to client library");
+                    return;
+                }
+                clientLibraryLink.sendMessage(payload, command, this.name);
+                Logger.log(Logger.MEMBER, "Sent message to client library: command=\"" + command + "\"");
+            } catch (Exception e) {
+                Logger.log(Logger.MEMBER, "Error sending message to client library: " + e.getMessage());
             }
-            clientLibraryLink.sendMessage(payload, command, this.name);
-            Logger.log(Logger.MEMBER, "Sent message to client library: command=\"" + command + "\"");
-        } catch (Exception e) {
-            Logger.log(Logger.MEMBER, "Error sending message to client library: " + e.getMessage());
-        }
+        });
     }
 
     /**
      * Sends a message to a specific member.
+     * The message is encrypted and sent on the sender thread, messages keep the order they were sent in.
      * 
      * @param memberName The name of the member
      * @param payload The message payload
      * @param command The command to execute
-     * @throws Exception If sending fails
      */
     public void sendToMember(String memberName, String payload, String command){
-        try {
-            if (!memberLinks.containsKey(memberName)) {
-                Logger.log(Logger.MEMBER, "No link to member " + memberName);
-                return;
+        sender.execute(() -> {
+            try {
+                if (!memberLinks.containsKey(memberName)) {
+                    Logger.log(Logger.MEMBER, "No link to member " + memberName);
+                    return;
+                }
+        
+                memberLinks.get(memberName).sendMessage(payload, command, this.name);
+                Logger.log(Logger.MEMBER, "Sent message to " + memberName + ": command=\"" + command + "\"");
+            } catch (Exception e) {
+                Logger.log(Logger.MEMBER, "Error sending message to " + memberName + ": " + e.getMessage());
             }
-    
-            memberLinks.get(memberName).sendMessage(payload, command, this.name);
-            Logger.log(Logger.MEMBER, "Sent message to " + memberName + ": command=\"" + command + "\"");
-        } catch (Exception e) {
-            Logger.log(Logger.MEMBER, "Error sending message to " + memberName + ": " + e.getMessage());
-        }
+        });
     }
 
     public Message handleNewMessage(String sourceId, AuthenticatedMessage authMessage) {
@@ -142,9 +156,13 @@ public class MemberManager {
         List<String> nodes = new ArrayList<>();
         try {
             String content = new String(Files.readAllBytes(Paths.get(setupFilePath)));
-            JSONObject jsonObject = new JSONObject(content).getJSONObject("setup");
+            JSONObject root = new JSONObject(content);
+            JSONObject jsonObject = root.getJSONObject("setup");
+            JSONObject consensus = root.optJSONObject("consensus");
+            linearVotes = consensus != null && consensus.optBoolean("linearVotes", false);
             clientLibraryPort = jsonObject.getJSONObject("clientLibrary").getInt("port");
             leaderName = jsonObject.getString("leader");
+            initialLeaderName = leaderName;
             Logger.log(Logger.MEMBER, "Leader is " + leaderName);
             for (String key : jsonObject.keySet()) {
                 if (!(key.equals("clientLibrary") || key.equals("leader"))) {
@@ -159,8 +177,96 @@ public class MemberManager {
         return nodes;
     }
 
+    /**
+     * Gets the leader of a view.
+     * Leaders rotate deterministically over the sorted member names, starting at the leader in setup.json.
+     * 
+     * @param view The view number
+     * @return The name of the leader of that view
+     */
+    public String getLeaderOfView(int view) {
+        if (members.isEmpty()) {
+            return initialLeaderName;
+        }
+        // Sorted copy, every member must agree on the rotation order while link setup keeps the file order
+        List<String> rotation = new ArrayList<>(members);
+        Collections.sort(rotation);
+        int start = Math.max(0, rotation.indexOf(initialLeaderName));
+        return rotation.get((start + view) % rotation.size());
+    }
+
+    /**
+     * Moves to a new view and to its leader.
+     * 
+     * @param newView The view to move to, ignored if it is not newer than the current one
+     * @return True if the view changed
+     */
+    public synchronized boolean changeView(int newView) {
+        if (newView <= view) {
+            return false;
+        }
+        view = newView;
+        leaderName = getLeaderOfView(newView);
+        Logger.log(Logger.MEMBER, "Moved to view " + view + ", leader is " + leaderName);
+        return true;
+    }
+
+    /**
+     * Signs data with the private key of this member.
+     * 
+     * @param data The data to sign
+     * @return The Base64-encoded signature, or null if signing fails
+     */
+    public String sign(String data) {
+        try {
+            return Encryption.sign(data, keyManager.getPrivateKey(name));
+        } catch (Exception e) {
+            Logger.log(Logger.MEMBER, "Error signing data: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Verifies a signature made by a member.
+     * 
+     * @param memberName The name of the signer
+     * @param data The signed data
+     * @param signature The Base64-encoded signature
+     * @return True if the signature is valid and the signer is a member
+     */
+    public boolean verify(String memberName, String data, String signature) {
+        PublicKey publicKey = keyManager.getPublicKey(memberName);
+        return members.contains(memberName) && publicKey != null && Encryption.verify(data, signature, publicKey);
+    }
+
+    /**
+     * Gets the number of signatures a quorum certificate needs, n - f.
+     * 
+     * @return The certificate size
+     */
+    public int getCertificateSize() {
+        return members.size() - getFaultTolerance();
+    }
+
+    /**
+     * Gets the number of Byzantine members tolerated, f, for n = 3f + 1.
+     * 
+     * @return The number of tolerated faulty members
+     */
+    public int getFaultTolerance() {
+        return (members.size() - 1) / 3;
+    }
+
     //--- Getters and Setters ---
 
+    public List<String> getMembers() {
+        return members;
+    }
+
+    public synchronized int getView() {
+        return view;
+    }
+
     public int getQuorumSize(){ 
         int quorumSize = (members.size() / 2) + 1;
         return quorumSize;
@@ -178,10 +284,18 @@ public class MemberManager {
         return memberLinks;
     }
 
-    public String getLeaderName() {
+    public synchronized String getLeaderName() {
         return leaderName;
     }
 
+    public boolean isLinearVotes() {
+        return linearVotes;
+    }
+
+    public String getSetupFilePath() {
+        return setupFilePath;
+    }
+
     public String getName() {
         return name;
     }
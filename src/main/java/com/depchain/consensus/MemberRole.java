@@ -6,8 +6,12 @@ import java.io.IOException;
 import java.util.List;
 
 import com.depchain.blockchain.Block;
+import com.depchain.blockchain.Transaction;
+import com.depchain.blockchain.WorldState;
 import com.depchain.networking.*;
 
+import org.json.JSONObject;
+
 public class MemberRole implements Role {
     private Member member;
 
@@ -41,6 +45,29 @@ public class MemberRole implements Role {
                     case "READ":
                         handleReadMessage(message);
                         break;
+                    case "TRANSACTION":
+                        handleTransactionMessage(message);
+                        break;
+                    case "VALUE":
+                        handleValueMessage(message);
+                        break;
+                    case "FETCH_VALUE":
+                        handleFetchValueMessage(message);
+                        break;
+                    case "VIEW_CHANGE":
+                        handleViewChangeMessage(message);
+                        break;
+                    case "PROPOSE":
+                        handleProposeMessage(message);
+                        break;
+                    case "WRITE_VOTE":
+                    case "ACCEPT_VOTE":
+                        handleVoteMessage(message);
+                        break;
+                    case "WRITE_QC":
+                    case "ACCEPT_QC":
+                        handleCertificateMessage(message);
+                        break;
                     case "GET_BALANCE":
                         System.out.println("............... Received GET_WORLD_STATE message: " + sourceId);
                         handleGetBalance(message);
@@ -53,9 +80,14 @@ public class MemberRole implements Role {
             }
             
     public void handleGetBalance(AuthenticatedMessage message) {
-        // Send WorldState to the sender
-        String sender = message.getPayload();
-        String balance = member.getWorldState().getBalance(sender);
+        // Send WorldState to the sender, read from a snapshot so it never waits for a block being applied
+        JSONObject request = new JSONObject(message.getPayload());
+        String sender = request.getString("clientName");
+        WorldState snapshot = member.getWorldState().snapshot(request.optLong("height", Long.MAX_VALUE));
+        if (snapshot == null) {
+            snapshot = member.getWorldState().snapshot(); // The height is no longer retained
+        }
+        String balance = snapshot.getBalance(sender);
         System.out.println("............... Sending balance to " + sender + ": " + balance);
         member.getMemberManager().sendToMember(member.getMemberManager().getLeaderName(), balance, "BALANCE");
         }
@@ -85,7 +117,16 @@ public class MemberRole implements Role {
     }
 
     @Override
-    public void handleTransactionMessage(Message message) {                
+    public void handleTransactionMessage(Message message) {
+        // Keep the transaction pending, so it can be proposed if this member becomes leader
+        try {
+            Transaction transaction = Transaction.deserializeFromString(message.getPayload());
+            if (transaction != null) {
+                member.admitTransaction(transaction, () -> { });
+            }
+        } catch (Exception e) {
+            Logger.log(Logger.MEMBER, "Error: Failed to deserialize transaction: " + e.getMessage());
+        }
     }
     
     @Override
@@ -118,6 +159,36 @@ public class MemberRole implements Role {
         member.getConsensus().handleAckMessage(message);
     }
 
+    @Override
+    public void handleValueMessage(Message message) {
+        member.getConsensus().handleValueMessage(message);
+    }
+
+    @Override
+    public void handleFetchValueMessage(Message message) {
+        member.getConsensus().handleFetchValueMessage(message);
+    }
+
+    @Override
+    public void handleViewChangeMessage(Message message) {
+        member.getConsensus().handleViewChangeMessage(message);
+    }
+
+    @Override
+    public void handleVoteMessage(Message message) {
+        member.getConsensus().handleVoteMessage(message);
+    }
+
+    @Override
+    public void handleCertificateMessage(Message message) {
+        member.getConsensus().handleCertificateMessage(message);
+    }
+
+    @Override
+    public void handleProposeMessage(Message message) {
+        member.getConsensus().handleFastProposeMessage(message);
+    }
+
     @Override
     public void handleAbortMessage(Message message) {
         Logger.log(Logger.MEMBER, "Received ABORT message");
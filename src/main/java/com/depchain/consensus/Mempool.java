@@ -0,0 +1,459 @@
+package com.depchain.consensus;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.json.JSONObject;
+
+import com.depchain.blockchain.Transaction;
+import com.depchain.utils.Logger;
+import com.depchain.utils.Metrics;
+
+/**
+ * Transactions received from the client library and not yet decided.
+ *
+ * Each sender has its own queue ordered by nonce, and only the head of each queue is ready to go
+ * into a block, which keeps a sender's transactions in nonce order. A transaction whose nonce is
+ * already pending for its sender is a duplicate, found with one lookup in that sender's queue;
+ * nonces already used on chain are refused at admission. The ready heads are kept sorted by
+ * arrival, so building a block of k transactions costs O(k log s) for s senders.
+ * Transactions are also indexed by hash, to remove them when their block is decided.
+ *
+ * Insertion can happen from any thread: the sender queues are updated under the lock of their
+ * own bin of a ConcurrentHashMap, so inserts of different senders do not contend.
+ *
+ * Transactions taken into a block stay indexed, in flight, until the block is decided, so they
+ * are not accepted twice. If the epoch aborts they go back to their queues. Once decided they stay
+ * in flight until the block reaches the world state, so until the sender's nonce and balance move
+ * past them admission still counts them as pending.
+ * When the pool is over capacity the sender with the most queued transactions loses its last
+ * one, so a sender flooding the pool pays for it rather than the others, and no sender is left
+ * with a gap in its nonces. Among queues as long, the one whose last transaction arrived latest
+ * loses it.
+ * The pool also tracks how much each sender's pending transactions spend, so admission can check
+ * a new transaction against the balance those transactions will leave.
+ *
+ * The capacity is read from the optional "mempool" object of setup.json:
+ *   "mempool": { "capacity": 10000 }
+ */
+public class Mempool {
+    private int capacity = 10000;
+
+    private final Map<String, Entry> byHash = new ConcurrentHashMap<>();
+    private final Map<String, SenderQueue> bySender = new ConcurrentHashMap<>();
+    private final Map<String, Long> pendingSpend = new ConcurrentHashMap<>(); // By sender in units, queued and in flight
+    private final ConcurrentSkipListMap<Long, Entry> readyHeads = new ConcurrentSkipListMap<>(); // Head of each sender queue, by order
+    private final ConcurrentSkipListSet<Length> byLength = new ConcurrentSkipListSet<>(); // Sender queues with queued transactions, longest first
+    private final AtomicLong sequence = new AtomicLong();
+    // Totals of the queued transactions, not only the ready heads: each becomes the head once the
+    // one before it is taken, so one block can take all of them
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong queuedGas = new AtomicLong();
+
+    public Mempool() {
+    }
+
+    /**
+     * Loads the mempool settings from a setup file, keeping the defaults for anything not configured.
+     *
+     * @param setupFilePath The path to setup.json
+     * @return An empty mempool
+     */
+    public static Mempool load(String setupFilePath) {
+        Mempool mempool = new Mempool();
+        try {
+            String content = new String(Files.readAllBytes(Paths.get(setupFilePath)));
+            JSONObject json = new JSONObject(content);
+            if (json.has("mempool")) {
+                mempool.capacity = Math.max(1, json.getJSONObject("mempool").optInt("capacity", mempool.capacity));
+            }
+        } catch (Exception e) {
+            Logger.log(Logger.MEMBER, "Error loading mempool settings, using defaults: " + e.getMessage());
+        }
+        return mempool;
+    }
+
+    /**
+     * Adds a transaction, unless its sender already has a transaction with the same nonce pending.
+     *
+     * @param transaction The received transaction
+     * @return True if the transaction was added, false if it is a duplicate
+     */
+    public boolean add(Transaction transaction) {
+        Entry entry = new Entry(transaction, sequence.getAndIncrement());
+        boolean[] added = {false};
+        update(entry.sender, queue -> {
+            if (queue.queued.containsKey(entry.nonce) || queue.inFlight.containsKey(entry.nonce)) {
+                return;
+            }
+            queue.queued.put(entry.nonce, entry);
+            byHash.put(entry.hash, entry);
+            addQueued(entry);
+            added[0] = true;
+        });
+        if (!added[0]) {
+            Metrics.increment("mempool_duplicates");
+            return false;
+        }
+        pendingSpend.merge(entry.sender, entry.amount, Mempool::addSaturated);
+
+        while (byHash.size() > capacity && evictFromLongest()) {
+            Metrics.increment("mempool_evicted");
+        }
+        Metrics.record("mempool_size", byHash.size());
+        return true;
+    }
+
+    /**
+     * Takes the best ready transactions for the next block, within the batching limits.
+     * They stay in flight until {@link #removeCommitted} or {@link #requeueInFlight}.
+     * A transaction over the limits on its own still gets a block of its own, so it cannot stall the pool.
+     *
+     * @param policy The batching limits
+     * @return The transactions of the next block, in order
+     */
+    public List<Transaction> takeBatch(BatchingPolicy policy) {
+        List<Transaction> batch = new ArrayList<>();
+        long bytes = 0;
+        long gas = 0;
+        Map.Entry<Long, Entry> head;
+        while ((head = readyHeads.firstEntry()) != null) {
+            Entry entry = head.getValue();
+            boolean fits = policy.fits(batch.size(), bytes, gas, entry.transaction);
+            if (!fits && !batch.isEmpty()) {
+                break;
+            }
+            if (!take(entry)) {
+                continue; // Evicted or committed meanwhile, the heads already moved on
+            }
+            batch.add(entry.transaction);
+            bytes += entry.transaction.getEncodedSize();
+            gas += entry.transaction.getIntrinsicGas();
+            if (!fits) {
+                break;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Holds the transactions of a decided block in flight until {@link #removeCommitted}, whether
+     * this member took them or still had them queued. They are never taken or requeued again.
+     *
+     * @param transactions The decided transactions
+     */
+    public void markDecided(Collection<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            Entry entry = byHash.get(transaction.getHash());
+            if (entry == null) {
+                continue;
+            }
+            entry.decided = true;
+            update(entry.sender, queue -> {
+                if (queue.queued.remove(entry.nonce, entry)) {
+                    removeQueued(entry);
+                    entry.inFlight = true;
+                    queue.inFlight.put(entry.nonce, entry);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the transactions of a block once the world state is past it, whether they were in
+     * flight or still queued.
+     *
+     * @param transactions The committed transactions
+     */
+    public void removeCommitted(Collection<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            Entry entry = byHash.remove(transaction.getHash());
+            if (entry == null) {
+                continue;
+            }
+            release(entry);
+            update(entry.sender, queue -> {
+                if (queue.queued.remove(entry.nonce, entry)) {
+                    removeQueued(entry);
+                }
+                queue.inFlight.remove(entry.nonce, entry);
+            });
+        }
+        Metrics.record("mempool_size", byHash.size());
+    }
+
+    /**
+     * Puts every in-flight transaction back in its queue, at its original position, except the
+     * decided ones. Called when the epoch that carried them aborts, or when the leader changes.
+     */
+    public void requeueInFlight() {
+        for (Entry entry : byHash.values()) {
+            if (!entry.inFlight || entry.decided) {
+                continue;
+            }
+            update(entry.sender, queue -> {
+                if (queue.inFlight.remove(entry.nonce, entry)) {
+                    entry.inFlight = false;
+                    queue.queued.put(entry.nonce, entry);
+                    addQueued(entry);
+                }
+            });
+        }
+    }
+
+    private boolean take(Entry entry) {
+        boolean[] taken = {false};
+        update(entry.sender, queue -> {
+            if (queue.queued.remove(entry.nonce, entry)) {
+                removeQueued(entry);
+                entry.inFlight = true;
+                queue.inFlight.put(entry.nonce, entry);
+                taken[0] = true;
+            }
+        });
+        return taken[0];
+    }
+
+    /**
+     * Evicts the highest queued nonce of the sender with the most queued transactions.
+     * Taking the tail rather than the head keeps the sender's remaining nonces contiguous.
+     *
+     * @return True if a transaction was evicted
+     */
+    private boolean evictFromLongest() {
+        Iterator<Length> longest = byLength.iterator();
+        if (!longest.hasNext()) {
+            return false; // Everything left is in flight
+        }
+        boolean[] evicted = {false};
+        update(longest.next().sender, queue -> {
+            Map.Entry<Long, Entry> tail = queue.queued.lastEntry();
+            if (tail == null) {
+                return;
+            }
+            Entry entry = tail.getValue();
+            queue.queued.remove(entry.nonce);
+            removeQueued(entry);
+            if (byHash.remove(entry.hash, entry)) {
+                release(entry);
+                evicted[0] = true;
+            }
+        });
+        return evicted[0];
+    }
+
+    private void release(Entry entry) {
+        pendingSpend.computeIfPresent(entry.sender, (sender, spend) -> {
+            long left = spend - entry.amount;
+            return left > 0 ? left : null;
+        });
+    }
+
+    /**
+     * Adds two amounts, staying at Long.MAX_VALUE instead of overflowing.
+     */
+    private static long addSaturated(long a, long b) {
+        return a > Long.MAX_VALUE - b ? Long.MAX_VALUE : a + b;
+    }
+
+    /**
+     * Changes a sender's queue under the lock of its bin, keeping the ready heads and the queue
+     * lengths in step.
+     */
+    private void update(String sender, Consumer<SenderQueue> change) {
+        bySender.compute(sender, (key, queue) -> {
+            if (queue == null) {
+                queue = new SenderQueue();
+            }
+            Entry before = queue.head();
+            Length lengthBefore = queue.length(sender);
+            change.accept(queue);
+            Entry after = queue.head();
+            if (before != after) {
+                if (before != null) {
+                    readyHeads.remove(before.order, before);
+                }
+                if (after != null) {
+                    readyHeads.put(after.order, after);
+                }
+            }
+            Length lengthAfter = queue.length(sender);
+            if (lengthBefore == null ? lengthAfter != null : !lengthBefore.equals(lengthAfter)) {
+                if (lengthBefore != null) {
+                    byLength.remove(lengthBefore);
+                }
+                if (lengthAfter != null) {
+                    byLength.add(lengthAfter);
+                }
+            }
+            return queue.queued.isEmpty() && queue.inFlight.isEmpty() ? null : queue;
+        });
+    }
+
+    private void addQueued(Entry entry) {
+        queuedCount.incrementAndGet();
+        queuedBytes.addAndGet(entry.transaction.getEncodedSize());
+        queuedGas.addAndGet(entry.transaction.getIntrinsicGas());
+    }
+
+    private void removeQueued(Entry entry) {
+        queuedCount.decrementAndGet();
+        queuedBytes.addAndGet(-entry.transaction.getEncodedSize());
+        queuedGas.addAndGet(-entry.transaction.getIntrinsicGas());
+    }
+
+    /**
+     * A pending transaction.
+     */
+    private static final class Entry {
+        private final Transaction transaction;
+        private final String hash;
+        private final String sender;
+        private final long amount;
+        private final long nonce;
+        private final long order; // Arrival sequence, unique across the mempool
+        private final long arrivedAt = System.currentTimeMillis();
+        private volatile boolean inFlight = false;
+        private volatile boolean decided = false; // In a decided block, waiting for the world state
+
+        private Entry(Transaction transaction, long order) {
+            this.transaction = transaction;
+            this.hash = transaction.getHash();
+            this.sender = String.valueOf(transaction.getSender());
+            this.amount = transaction.getAmount();
+            this.nonce = transaction.getNonce();
+            this.order = order;
+        }
+    }
+
+    /**
+     * The pending transactions of one sender, by nonce.
+     */
+    private static final class SenderQueue {
+        private final TreeMap<Long, Entry> queued = new TreeMap<>();
+        private final Map<Long, Entry> inFlight = new HashMap<>();
+
+        private Entry head() {
+            return queued.isEmpty() ? null : queued.firstEntry().getValue();
+        }
+
+        private Length length(String sender) {
+            return queued.isEmpty() ? null : new Length(queued.size(), queued.lastEntry().getValue().order, sender);
+        }
+    }
+
+    /**
+     * How many transactions a sender has queued, ordered longest first, then by the latest last arrival.
+     */
+    private static final class Length implements Comparable<Length> {
+        private final int queued;
+        private final long tailOrder; // Arrival sequence of the last queued transaction, unique
+        private final String sender;
+
+        private Length(int queued, long tailOrder, String sender) {
+            this.queued = queued;
+            this.tailOrder = tailOrder;
+            this.sender = sender;
+        }
+
+        @Override
+        public int compareTo(Length other) {
+            int byQueued = Integer.compare(other.queued, queued);
+            return byQueued != 0 ? byQueued : Long.compare(other.tailOrder, tailOrder);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Length && compareTo((Length) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(tailOrder);
+        }
+    }
+
+    //--- Getters and Setters ---
+
+    /**
+     * Gets when the oldest ready transaction arrived. This is the arrival of a transaction still
+     * waiting, so taking a batch does not reset it, and a requeued transaction keeps its own.
+     *
+     * @return The arrival time in milliseconds, or 0 if no transaction is ready
+     */
+    public long getOldestReadyArrival() {
+        Map.Entry<Long, Entry> oldest = readyHeads.firstEntry();
+        return oldest == null ? 0 : oldest.getValue().arrivedAt;
+    }
+
+    /**
+     * Gets how much a sender's pending transactions, queued or in flight, will spend.
+     *
+     * @param sender The sender's name
+     * @return The total amount in units, zero if the sender has nothing pending
+     */
+    public long getPendingSpend(String sender) {
+        return pendingSpend.getOrDefault(sender, 0L);
+    }
+
+    /**
+     * Gets how many transactions of a sender are pending, queued or in flight.
+     * Admission keeps their nonces contiguous, so the sender's next nonce follows them.
+     *
+     * @param sender The sender's name
+     * @return The number of pending transactions
+     */
+    public int getPendingCount(String sender) {
+        int[] count = {0};
+        bySender.computeIfPresent(sender, (key, queue) -> {
+            count[0] = queue.queued.size() + queue.inFlight.size(); // Under the lock of the sender's bin
+            return queue;
+        });
+        return count[0];
+    }
+
+    public boolean contains(String hash) {
+        return byHash.containsKey(hash);
+    }
+
+    public boolean isEmpty() {
+        return byHash.isEmpty();
+    }
+
+    public boolean hasReady() {
+        return !readyHeads.isEmpty();
+    }
+
+    public int size() {
+        return byHash.size();
+    }
+
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    public long getQueuedGas() {
+        return queuedGas.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,252 @@
+package com.depchain.consensus;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A set of member signatures over the same phase, timestamp and value digest.
+ *
+ * With linear votes, members sign their WRITE and ACCEPT votes and send them only to the leader.
+ * A single vote is a certificate with one signature. The leader aggregates n - f of them and
+ * broadcasts the certificate, so each phase costs O(n) messages instead of O(n^2).
+ *
+ * Encoding, sent as Base64:
+ *
+ *   byte     version
+ *   byte     phase length, phase (UTF-8)
+ *   int      timestamp
+ *   byte[32] SHA-256 digest of the value
+ *   short    signature count
+ *   signature:
+ *     byte   member id length, member id (UTF-8)
+ *     short  signature length, signature
+ */
+public class QuorumCertificate {
+    public static final String WRITE = "WRITE";
+    public static final String ACCEPT = "ACCEPT";
+
+    private static final byte VERSION = 1;
+    private static final int DIGEST_SIZE = 32;
+
+    private final String phase;
+    private final int timestamp;
+    private final String digest;
+    private final Map<String, byte[]> signatures = new LinkedHashMap<>();
+
+    public QuorumCertificate(String phase, int timestamp, String digest) {
+        this.phase = phase;
+        this.timestamp = timestamp;
+        this.digest = digest;
+    }
+
+    /**
+     * Creates this member's signed vote for a value.
+     *
+     * @param memberManager The manager holding this member's keys
+     * @param phase The phase voted on, WRITE or ACCEPT
+     * @param value The epoch state voted for
+     * @return The vote, or null if it could not be signed
+     */
+    public static QuorumCertificate vote(MemberManager memberManager, String phase, EpochState value) {
+        QuorumCertificate vote = new QuorumCertificate(phase, value.getTimeStamp(), value.getDigest());
+        String signature = memberManager.sign(vote.statement());
+        if (signature == null) {
+            return null;
+        }
+        vote.signatures.put(memberManager.getName(), Base64.getDecoder().decode(signature));
+        return vote;
+    }
+
+    /**
+     * Gets the statement every signature of this certificate signs.
+     *
+     * @return The signed statement
+     */
+    public String statement() {
+        return phase + ":" + timestamp + ":" + digest;
+    }
+
+    /**
+     * Checks whether this certificate is about a given value.
+     *
+     * @param value The epoch state
+     * @return True if the timestamp and digest match
+     */
+    public boolean certifies(EpochState value) {
+        return value != null && timestamp == value.getTimeStamp() && digest != null && digest.equals(value.getDigest());
+    }
+
+    /**
+     * Counts the valid signatures of distinct members.
+     *
+     * @param memberManager The manager holding the members' public keys
+     * @return The number of valid signatures
+     */
+    public int countValidSignatures(MemberManager memberManager) {
+        int valid = 0;
+        String statement = statement();
+        for (Map.Entry<String, byte[]> entry : signatures.entrySet()) {
+            String signature = Base64.getEncoder().encodeToString(entry.getValue());
+            if (memberManager.verify(entry.getKey(), statement, signature)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Checks that the certificate holds at least n - f valid signatures.
+     *
+     * @param memberManager The manager holding the members' public keys
+     * @return True if the certificate is valid
+     */
+    public boolean isValid(MemberManager memberManager) {
+        return signatures.size() >= memberManager.getCertificateSize()
+                && countValidSignatures(memberManager) >= memberManager.getCertificateSize();
+    }
+
+    /**
+     * Encodes the certificate.
+     *
+     * @return The Base64 encoded certificate
+     * @throws IllegalArgumentException If the digest is malformed
+     */
+    public String encode() {
+        byte[] phaseBytes = phase.getBytes(StandardCharsets.UTF_8);
+        int size = 2 + phaseBytes.length + 4 + DIGEST_SIZE + 2;
+        for (Map.Entry<String, byte[]> entry : signatures.entrySet()) {
+            size += 1 + entry.getKey().getBytes(StandardCharsets.UTF_8).length + 2 + entry.getValue().length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.put((byte) phaseBytes.length);
+        buffer.put(phaseBytes);
+        buffer.putInt(timestamp);
+        buffer.put(ConsensusCodec.fromHex(digest));
+        buffer.putShort((short) signatures.size());
+        for (Map.Entry<String, byte[]> entry : signatures.entrySet()) {
+            byte[] memberId = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            buffer.put((byte) memberId.length);
+            buffer.put(memberId);
+            buffer.putShort((short) entry.getValue().length);
+            buffer.put(entry.getValue());
+        }
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decodes a certificate or a single vote.
+     *
+     * @param payload The encoded certificate
+     * @return The certificate, signatures are not verified
+     * @throws IllegalArgumentException If the payload is malformed
+     */
+    public static QuorumCertificate decode(String payload) {
+        if (payload == null || payload.isEmpty()) {
+            throw new IllegalArgumentException("Empty quorum certificate");
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(payload));
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unknown quorum certificate version: " + version);
+            }
+            String phase = readString(buffer, buffer.get() & 0xff);
+            int timestamp = buffer.getInt();
+            byte[] digest = new byte[DIGEST_SIZE];
+            buffer.get(digest);
+
+            QuorumCertificate certificate = new QuorumCertificate(phase, timestamp, ConsensusCodec.toHex(ByteBuffer.wrap(digest)));
+            int count = buffer.getShort() & 0xffff;
+            for (int i = 0; i < count; i++) {
+                String memberId = readString(buffer, buffer.get() & 0xff);
+                byte[] signature = new byte[buffer.getShort() & 0xffff];
+                buffer.get(signature);
+                certificate.signatures.put(memberId, signature);
+            }
+            return certificate;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed quorum certificate", e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Aggregates the votes of one phase on the leader.
+     * Votes are verified with {@link #verify} on a worker thread, then added on the event loop,
+     * and one certificate is completed per value.
+     */
+    public static class Collector {
+        private final String phase;
+        private final Map<String, QuorumCertificate> certificates = new HashMap<>(); // By statement
+        private boolean completed = false;
+
+        public Collector(String phase) {
+            this.phase = phase;
+        }
+
+        /**
+         * Checks that a vote holds exactly one valid signature, made by the member that sent it.
+         *
+         * @param vote The vote received
+         * @param sourceId The member that sent the vote
+         * @param memberManager The manager holding the members' public keys
+         * @return True if the vote can be counted
+         */
+        public static boolean verify(QuorumCertificate vote, String sourceId, MemberManager memberManager) {
+            return vote.signatures.size() == 1 && vote.signatures.containsKey(sourceId)
+                    && vote.countValidSignatures(memberManager) == 1;
+        }
+
+        /**
+         * Adds a single verified vote.
+         *
+         * @param vote The vote, already checked with {@link #verify}
+         * @param memberManager The manager holding the certificate size
+         * @return The certificate, once it reaches n - f signatures for the first time, null otherwise
+         */
+        public QuorumCertificate add(QuorumCertificate vote, MemberManager memberManager) {
+            if (completed || !phase.equals(vote.phase) || vote.signatures.size() != 1) {
+                return null;
+            }
+
+            QuorumCertificate certificate = certificates.computeIfAbsent(vote.statement(),
+                    s -> new QuorumCertificate(vote.phase, vote.timestamp, vote.digest));
+            certificate.signatures.putAll(vote.signatures);
+            if (certificate.signatures.size() >= memberManager.getCertificateSize()) {
+                completed = true;
+                return certificate;
+            }
+            return null;
+        }
+    }
+
+    //--- Getters and Setters ---
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public int getTimestamp() {
+        return timestamp;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public int getSignatureCount() {
+        return signatures.size();
+    }
+}
@@ -19,6 +19,12 @@ public interface Role {
     void handleAckMessage(Message message) throws Exception;
     void handleDecideMessage(Message message) throws Exception;
     void handleAbortMessage(Message message) throws Exception;
+    void handleValueMessage(Message message) throws Exception;
+    void handleFetchValueMessage(Message message) throws Exception;
+    void handleViewChangeMessage(Message message) throws Exception;
+    void handleProposeMessage(Message message) throws Exception;
+    void handleVoteMessage(Message message) throws Exception;
+    void handleCertificateMessage(Message message) throws Exception;
     void saveBlock(Block block) throws Exception;
     void decided() throws Exception;
     void aborted() throws Exception;
@@ -0,0 +1,296 @@
+package com.depchain.consensus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import org.json.JSONObject;
+
+import com.depchain.blockchain.Block;
+import com.depchain.blockchain.Receipt;
+import com.depchain.blockchain.Transaction;
+import com.depchain.blockchain.WorldState;
+import com.depchain.utils.Logger;
+import com.depchain.utils.Metrics;
+
+/**
+ * Executes proposed blocks before they are decided, so execution overlaps the WRITE and ACCEPT rounds.
+ *
+ * A block is executed on a worker thread as soon as its value is validated, in a layer on top of
+ * the committed world state or, if the previous block is not decided yet, on top of that block's
+ * speculative post-state. Executions are kept by value digest. When a value is decided, its layer
+ * is committed instead of executing the block again, provided it was built on the state the block
+ * actually follows. If the execution is still running, the install waits for it, so each
+ * block is executed once per member. Decided values are installed strictly in decide order: a
+ * value whose execution cannot be used waits behind the installs still waiting for theirs, so it
+ * never reaches the world state before the blocks decided ahead of it. An abort discards every
+ * execution that was not decided.
+ *
+ * Only used from the event loop.
+ */
+public class SpeculativeExecutor {
+    private final EventLoop loop;
+    private final Map<String, Execution> executions = new LinkedHashMap<>(); // By value digest, parents before children
+    private String committedDigest = null; // Value whose post-state the world state is, null before the first decide
+    private final Deque<Install> installs = new ArrayDeque<>(); // Decided values not installed yet, in decide order
+
+    public SpeculativeExecutor(EventLoop loop) {
+        this.loop = loop;
+    }
+
+    /**
+     * Starts executing a block, unless its value is already executing.
+     *
+     * @param digest The digest of the value
+     * @param block The block of the value
+     * @param committed The committed world state
+     */
+    public void execute(String digest, Block block, WorldState committed) {
+        if (digest == null || executions.containsKey(digest)) {
+            return;
+        }
+        Execution parent = tip();
+        Execution execution = new Execution(digest, parent == null ? committedDigest : parent.digest, block);
+        executions.put(digest, execution);
+        if (parent == null) {
+            start(execution, committed);
+        } else {
+            // Builds on the previous block as soon as its own execution finishes
+            parent.whenDone(done -> {
+                if (done.postState == null) {
+                    discard(execution);
+                } else {
+                    start(execution, done.postState);
+                }
+            });
+        }
+    }
+
+    /**
+     * Calls back once the execution of a value finishes.
+     *
+     * @param digest The digest of the value
+     * @param then Called on the event loop with the execution, or null if there is none or it failed
+     */
+    public void whenExecuted(String digest, Consumer<Execution> then) {
+        Execution execution = executions.get(digest);
+        if (execution == null) {
+            then.accept(null);
+            return;
+        }
+        execution.whenDone(done -> then.accept(done.postState == null ? null : done));
+    }
+
+    /**
+     * Records that a value was decided, and installs its execution once it finishes.
+     * Executions built on anything else than its post-state are discarded, and so is everything
+     * built on it if its own execution cannot be used.
+     * Installs run in decide order, before any execution built on them reacts, so a block that must
+     * be executed now still waits for the installs of the blocks decided before it.
+     *
+     * @param digest The digest of the decided value
+     * @param install Called on the event loop with the execution, or with null if the block must be executed then
+     */
+    public void decided(String digest, Consumer<Execution> install) {
+        Execution execution = executions.get(digest);
+        boolean usable = execution != null && !execution.discarded && Objects.equals(execution.baseDigest, committedDigest)
+                && !(execution.done && execution.postState == null);
+        Metrics.increment(usable ? "speculation_hits" : "speculation_misses");
+
+        committedDigest = digest;
+        List<String> kept = new ArrayList<>();
+        Iterator<Execution> iterator = executions.values().iterator();
+        while (iterator.hasNext()) {
+            Execution other = iterator.next();
+            if (usable && other == execution || kept.contains(other.baseDigest)) {
+                kept.add(other.digest);
+            } else if (!other.decided) {
+                other.discarded = true;
+                iterator.remove();
+            }
+        }
+
+        if (usable) {
+            execution.decided = true;
+            execution.install = done -> runInstalls();
+        }
+        installs.add(new Install(usable ? execution : null, install));
+        runInstalls();
+    }
+
+    /**
+     * Discards every execution that was not decided, after an abort.
+     */
+    public void abort() {
+        Iterator<Execution> iterator = executions.values().iterator();
+        while (iterator.hasNext()) {
+            Execution execution = iterator.next();
+            if (!execution.decided) {
+                execution.discarded = true;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the block of a value being executed, so it does not need to be deserialized again.
+     *
+     * @param digest The digest of the value
+     * @return The block, or null if the value is not being executed
+     */
+    public Block getBlock(String digest) {
+        Execution execution = executions.get(digest);
+        return execution == null ? null : execution.block;
+    }
+
+    private void start(Execution execution, WorldState base) {
+        if (execution.discarded) {
+            return;
+        }
+        WorldState state = base.overlay(); // Costs O(touched accounts), the base is never modified through it
+        loop.offload(() -> {
+            List<Receipt> receipts = state.applyBlock(execution.block);
+            JSONObject results = new JSONObject();
+            for (int i = 0; i < receipts.size(); i++) {
+                Receipt receipt = receipts.get(i);
+                Transaction transaction = execution.block.getTransactions().get(i);
+                results.put(receipt.getTransactionHash(), receipt.isSuccess()
+                        ? state.getBalance(transaction.getSender()) + ":" + state.getBalance(transaction.getReceiver())
+                        : "failed:" + receipt.getReason());
+            }
+            execution.receipts = receipts;
+            execution.results = results;
+            return state;
+        }, postState -> {
+            if (postState == null) {
+                Logger.log(Logger.EPOCH_CONSENSUS, "Speculative execution of " + execution.digest + " failed");
+            }
+            execution.finish(postState);
+        });
+    }
+
+    /**
+     * Runs the installs at the head of the queue whose execution finished, stopping at the first
+     * one still executing.
+     */
+    private void runInstalls() {
+        while (!installs.isEmpty() && installs.peek().isReady()) {
+            Install next = installs.poll();
+            Execution execution = next.execution;
+            if (execution == null) {
+                next.install.accept(null);
+            } else {
+                executions.remove(execution.digest, execution);
+                next.install.accept(execution.postState == null ? null : execution);
+            }
+        }
+    }
+
+    private void discard(Execution execution) {
+        execution.discarded = true;
+        executions.remove(execution.digest, execution);
+        execution.finish(null);
+    }
+
+    /**
+     * The last execution not decided yet, which the next block builds on.
+     */
+    private Execution tip() {
+        Execution tip = null;
+        for (Execution execution : executions.values()) {
+            tip = execution;
+        }
+        return tip;
+    }
+
+    /**
+     * A decided value waiting for its turn to be installed.
+     */
+    private static final class Install {
+        private final Execution execution; // Null if the block must be executed at install
+        private final Consumer<Execution> install;
+
+        private Install(Execution execution, Consumer<Execution> install) {
+            this.execution = execution;
+            this.install = install;
+        }
+
+        private boolean isReady() {
+            return execution == null || execution.done;
+        }
+    }
+
+    /**
+     * The speculative execution of one value.
+     */
+    public static class Execution {
+        private final String digest;
+        private final String baseDigest; // Value whose post-state this execution started from, null for genesis
+        private final Block block;
+        private WorldState postState;
+        private List<Receipt> receipts;
+        private JSONObject results; // Tentative balances of each transaction, as reported to the client library
+        private boolean done = false;
+        private boolean discarded = false;
+        private boolean decided = false;
+        private Consumer<Execution> install; // Set once decided, runs the installs before the other waiters
+        private final List<Consumer<Execution>> waiters = new ArrayList<>();
+
+        private Execution(String digest, String baseDigest, Block block) {
+            this.digest = digest;
+            this.baseDigest = baseDigest;
+            this.block = block;
+        }
+
+        private void whenDone(Consumer<Execution> then) {
+            if (done) {
+                then.accept(this);
+            } else {
+                waiters.add(then);
+            }
+        }
+
+        private void finish(WorldState postState) {
+            if (done) {
+                return;
+            }
+            this.postState = discarded ? null : postState;
+            this.done = true;
+            if (install != null) {
+                install.accept(this);
+            }
+            for (Consumer<Execution> waiter : waiters) {
+                waiter.accept(this);
+            }
+            waiters.clear();
+        }
+
+        //--- Getters and Setters ---
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public Block getBlock() {
+            return block;
+        }
+
+        public WorldState getPostState() {
+            return postState;
+        }
+
+        public List<Receipt> getReceipts() {
+            return receipts;
+        }
+
+        public JSONObject getResults() {
+            return results;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.depchain.consensus;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.json.JSONObject;
+
+import com.depchain.utils.Logger;
+import com.depchain.utils.Metrics;
+
+/**
+ * Adaptive timeouts for the phases of an epoch.
+ *
+ * The timeout of a phase is a percentile of its recently observed latencies, times a headroom
+ * factor, clamped between a minimum and a maximum. Before any latency is observed the initial
+ * timeout is used. Every consecutive abort doubles all timeouts, and a decide resets them.
+ *
+ * The policy is read from the optional "timeouts" object of setup.json:
+ *   "timeouts": { "initialMs": 4000, "minMs": 500, "maxMs": 30000, "percentile": 0.99,
+ *                 "headroom": 2.0, "window": 64 }
+ */
+public class TimeoutPolicy {
+    public static final String STATES = "states";
+    public static final String WRITE = "write";
+    public static final String ACCEPT = "accept";
+    public static final String VALUE = "value";
+    public static final String BALANCES = "balances";
+
+    private static final int MAX_BACKOFF_SHIFT = 10;
+
+    private long initialMs = 4000;
+    private long minMs = 500;
+    private long maxMs = 30000;
+    private double percentile = 0.99;
+    private double headroom = 2.0;
+    private int window = 64;
+
+    private final Map<String, long[]> samples = new HashMap<>(); // Ring buffer of latencies per phase
+    private final Map<String, Integer> sampleCounts = new HashMap<>();
+    private int consecutiveAborts = 0;
+
+    public TimeoutPolicy() {
+    }
+
+    /**
+     * Loads the policy from a setup file, keeping the defaults for anything not configured.
+     *
+     * @param setupFilePath The path to setup.json
+     * @return The timeout policy
+     */
+    public static TimeoutPolicy load(String setupFilePath) {
+        TimeoutPolicy policy = new TimeoutPolicy();
+        try {
+            String content = new String(Files.readAllBytes(Paths.get(setupFilePath)));
+            JSONObject json = new JSONObject(content);
+            if (json.has("timeouts")) {
+                JSONObject timeouts = json.getJSONObject("timeouts");
+                policy.initialMs = timeouts.optLong("initialMs", policy.initialMs);
+                policy.minMs = timeouts.optLong("minMs", policy.minMs);
+                policy.maxMs = timeouts.optLong("maxMs", policy.maxMs);
+                policy.percentile = timeouts.optDouble("percentile", policy.percentile);
+                policy.headroom = timeouts.optDouble("headroom", policy.headroom);
+                policy.window = Math.max(1, timeouts.optInt("window", policy.window));
+            }
+        } catch (Exception e) {
+            Logger.log(Logger.EPOCH_CONSENSUS, "Error loading timeout policy, using defaults: " + e.getMessage());
+        }
+        return policy;
+    }
+
+    /**
+     * Gets the current timeout of a phase.
+     *
+     * @param phase The phase name
+     * @return The timeout in milliseconds
+     */
+    public synchronized long timeout(String phase) {
+        long base = initialMs;
+        Integer count = sampleCounts.get(phase);
+        if (count != null && count > 0) {
+            long[] sorted = Arrays.copyOf(samples.get(phase), Math.min(count, window));
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            long observed = sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+            base = Math.max(minMs, Math.min(maxMs, (long) (observed * headroom)));
+        }
+        long timeout = base << Math.min(consecutiveAborts, MAX_BACKOFF_SHIFT);
+        return Math.min(maxMs, timeout);
+    }
+
+    /**
+     * Waits on the event loop until a condition holds or the phase times out.
+     * The time it took is recorded as a latency sample of the phase.
+     *
+     * @param loop The event loop the wait runs on
+     * @param phase The phase name
+     * @param condition The condition to wait for
+     * @param then Called on the loop with true if the condition holds, false on timeout
+     */
+    public void when(EventLoop loop, String phase, BooleanSupplier condition, Consumer<Boolean> then) {
+        long timeout = timeout(phase);
+        Metrics.record("timeout_" + phase + "_ms", timeout);
+
+        long start = System.currentTimeMillis();
+        loop.when(condition, timeout, satisfied -> {
+            if (satisfied) {
+                recordLatency(phase, System.currentTimeMillis() - start);
+            } else {
+                Metrics.increment("timeout_" + phase + "_expired");
+                Logger.log(Logger.EPOCH_CONSENSUS, "Phase " + phase + " timed out after " + timeout + "ms");
+            }
+            then.accept(satisfied);
+        });
+    }
+
+    /**
+     * Adds a latency sample to a phase.
+     *
+     * @param phase The phase name
+     * @param latency The observed latency in milliseconds
+     */
+    public synchronized void recordLatency(String phase, long latency) {
+        long[] ring = samples.computeIfAbsent(phase, p -> new long[window]);
+        int count = sampleCounts.getOrDefault(phase, 0);
+        ring[count % window] = latency;
+        sampleCounts.put(phase, count + 1);
+        Metrics.record("latency_" + phase + "_ms", latency);
+    }
+
+    /**
+     * Called when an epoch aborts, doubling every timeout until the next decide.
+     */
+    public synchronized void aborted() {
+        consecutiveAborts++;
+        Metrics.record("timeout_backoff", consecutiveAborts);
+    }
+
+    /**
+     * Called when an epoch decides, resetting the backoff.
+     */
+    public synchronized void decided() {
+        consecutiveAborts = 0;
+    }
+
+    //--- Getters and Setters ---
+
+    public synchronized int getConsecutiveAborts() {
+        return consecutiveAborts;
+    }
+}
@@ -0,0 +1,82 @@
+package com.depchain.consensus;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Content-addressed store for proposed values (serialized blocks).
+ * The leader disseminates each block body once, and every consensus vote
+ * only carries the SHA-256 digest of the value it refers to.
+ */
+public class ValueStore {
+    private static final int MAX_VALUES = 64;
+
+    private final Map<String, String> values = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_VALUES;
+        }
+    };
+
+    /**
+     * Stores a value under its digest.
+     *
+     * @param value The serialized value to store
+     * @return The digest of the value, or null if the value is empty
+     */
+    public synchronized String put(String value) {
+        String digest = digest(value);
+        if (digest != null) {
+            values.put(digest, value);
+        }
+        return digest;
+    }
+
+    /**
+     * Gets the value stored under a digest.
+     *
+     * @param digest The digest of the value
+     * @return The value, or null if it is not known locally
+     */
+    public synchronized String get(String digest) {
+        if (digest == null) {
+            return null;
+        }
+        return values.get(digest);
+    }
+
+    public synchronized boolean contains(String digest) {
+        return digest != null && values.containsKey(digest);
+    }
+
+    /**
+     * Calculates the SHA-256 digest of a value.
+     *
+     * @param value The value to hash
+     * @return The hex encoded digest, or null if the value is null or empty
+     */
+    public static String digest(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hashBytes = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hashBytes) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) hexString.append('0');
+                hexString.append(hex);
+            }
+
+            return hexString.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.Signature;
 import java.util.Base64;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
@@ -159,6 +160,39 @@ public class Encryption {
     }
 
 
+    /**
+     * Signs a string with SHA256withRSA.
+     *
+     * @param data The data to sign
+     * @param privateKey The RSA private key
+     * @return The Base64-encoded signature
+     * @throws Exception If signing fails
+     */
+    public static String sign(String data, PrivateKey privateKey) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(privateKey);
+        signature.update(data.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(signature.sign());
+    }
+
+    /**
+     * Verifies a SHA256withRSA signature.
+     *
+     * @param data The signed data
+     * @param signatureBase64 The Base64-encoded signature
+     * @param publicKey The RSA public key of the signer
+     * @return True if the signature is valid, false otherwise
+     */
+    public static boolean verify(String data, String signatureBase64, PublicKey publicKey) {
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initVerify(publicKey);
+            signature.update(data.getBytes(StandardCharsets.UTF_8));
+            return signature.verify(Base64.getDecoder().decode(signatureBase64));
+        } catch (Exception e) {
+            return false;
+        }
+    }
 
     // Generate a random AES key
     public static SecretKey generateAesKey() throws NoSuchAlgorithmException {
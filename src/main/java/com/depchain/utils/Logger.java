@@ -23,8 +23,9 @@ public class Logger {
     public static final int MEMBER = 4;                  // Layer 4
     public static final int CONDITIONAL_COLLECT = 5;     // Layer 5
     public static final int EPOCH_CONSENSUS = 6;         // Layer 6
+    public static final int METRICS = 7;                 // Layer 7
 
-    private static boolean[] enabledLevels = new boolean[]{true, true, true, true, true, true, true};
+    private static boolean[] enabledLevels = new boolean[]{true, true, true, true, true, true, true, true};
 
     /**
      * Initialize logger from command line arguments.
@@ -118,6 +119,10 @@ public class Logger {
                     prefix = "[EpochConsensus] ";
                     color = WHITE;
                     break;
+                case METRICS:
+                    prefix = "[Metrics] ";
+                    color = BLUE;
+                    break;
             }
             System.out.println(color + prefix + message + RESET);
         }
@@ -0,0 +1,114 @@
+package com.depchain.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide registry of named measurements.
+ * Each name keeps the count, sum, minimum, maximum and last recorded value.
+ * A member logs every metric each 100 decided blocks, at the METRICS log level.
+ */
+public class Metrics {
+    private static final Map<String, Stat> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Records a value for a metric, creating it if needed.
+     *
+     * @param name The name of the metric
+     * @param value The value to record
+     */
+    public static void record(String name, long value) {
+        stats.computeIfAbsent(name, key -> new Stat()).record(value);
+    }
+
+    /**
+     * Increments a counter metric by one.
+     *
+     * @param name The name of the counter
+     */
+    public static void increment(String name) {
+        record(name, 1);
+    }
+
+    /**
+     * Gets a metric.
+     *
+     * @param name The name of the metric
+     * @return The metric, or null if nothing was recorded under that name
+     */
+    public static Stat get(String name) {
+        return stats.get(name);
+    }
+
+    /**
+     * Formats every metric, sorted by name, one per line.
+     *
+     * @return The formatted metrics
+     */
+    public static String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Stat> entry : new TreeMap<>(stats).entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Logs every metric at the METRICS level.
+     */
+    public static void log() {
+        Logger.log(Logger.METRICS, "\n" + snapshot());
+    }
+
+    /**
+     * Aggregated values of a single metric.
+     */
+    public static class Stat {
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+        private long last;
+
+        private synchronized void record(long value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            last = value;
+        }
+
+        //--- Getters and Setters ---
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getSum() {
+            return sum;
+        }
+
+        public synchronized long getMin() {
+            return min;
+        }
+
+        public synchronized long getMax() {
+            return max;
+        }
+
+        public synchronized long getLast() {
+            return last;
+        }
+
+        public synchronized double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "count=" + count + ", last=" + last + ", min=" + min + ", max=" + max
+                    + ", mean=" + String.format("%.1f", getMean());
+        }
+    }
+}
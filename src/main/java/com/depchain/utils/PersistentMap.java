@@ -0,0 +1,425 @@
+package com.depchain.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable map whose updates return a new version sharing structure with the old one.
+ *
+ * The map is a hash array mapped trie: each level consumes 5 bits of the key's hash and keeps
+ * only the children that exist, indexed by a bitmap. An update copies the O(log32 n) nodes on
+ * the path to the key and shares every other node, so keeping a version is a pointer copy, any
+ * number of readers can use a version while newer ones are built, and versions nobody holds are
+ * garbage collected. Keys whose whole hash collides share a collision node.
+ *
+ * The {@link Map} view is read-only, changes go through {@link #with} and {@link #without}.
+ */
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root; // Null when empty
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Gets the version of this map with a key set to a value.
+     *
+     * @param key The key
+     * @param value The value
+     * @return The new version, this one is unchanged
+     */
+    public PersistentMap<K, V> with(K key, V value) {
+        boolean[] grew = {false};
+        Node updated = insert(root, 0, new Leaf(hash(key), key, value), grew);
+        return new PersistentMap<>(updated, grew[0] ? size + 1 : size);
+    }
+
+    /**
+     * Gets the version of this map without a key.
+     *
+     * @param key The key
+     * @return The new version, or this one if it does not hold the key
+     */
+    public PersistentMap<K, V> without(Object key) {
+        boolean[] shrank = {false};
+        Node updated = remove(root, 0, hash(key), key, shrank);
+        return shrank[0] ? new PersistentMap<>(updated, size - 1) : this;
+    }
+
+    /**
+     * Gets the version of this map with every entry of another map added, replacing existing keys.
+     *
+     * @param entries The entries to add
+     * @return The new version, this one is unchanged
+     */
+    public PersistentMap<K, V> withAll(Map<? extends K, ? extends V> entries) {
+        PersistentMap<K, V> result = this;
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            result = result.with(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Leaf leaf = find(key);
+        return leaf == null ? null : (V) leaf.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private Leaf find(Object key) {
+        int hash = hash(key);
+        Node node = root;
+        int shift = 0;
+        while (node != null) {
+            if (node instanceof Leaf) {
+                Leaf leaf = (Leaf) node;
+                return leaf.hash == hash && Objects.equals(leaf.key, key) ? leaf : null;
+            }
+            if (node instanceof Collision) {
+                Collision collision = (Collision) node;
+                return collision.hash == hash ? collision.find(key) : null;
+            }
+            Branch branch = (Branch) node;
+            int bit = bit(hash, shift);
+            if ((branch.bitmap & bit) == 0) {
+                return null;
+            }
+            node = branch.children[index(branch.bitmap, bit)];
+            shift += BITS;
+        }
+        return null;
+    }
+
+    private static Node insert(Node node, int shift, Leaf leaf, boolean[] grew) {
+        if (node == null) {
+            grew[0] = true;
+            return leaf;
+        }
+        if (node instanceof Leaf) {
+            Leaf existing = (Leaf) node;
+            if (existing.hash != leaf.hash) {
+                grew[0] = true;
+                return split(existing, existing.hash, leaf, shift);
+            }
+            if (Objects.equals(existing.key, leaf.key)) {
+                return leaf;
+            }
+            grew[0] = true;
+            return new Collision(leaf.hash, new Leaf[] {existing, leaf});
+        }
+        if (node instanceof Collision) {
+            Collision collision = (Collision) node;
+            if (collision.hash != leaf.hash) {
+                grew[0] = true;
+                return split(collision, collision.hash, leaf, shift);
+            }
+            return collision.with(leaf, grew);
+        }
+
+        Branch branch = (Branch) node;
+        int bit = bit(leaf.hash, shift);
+        int index = index(branch.bitmap, bit);
+        if ((branch.bitmap & bit) == 0) {
+            grew[0] = true;
+            Node[] children = new Node[branch.children.length + 1];
+            System.arraycopy(branch.children, 0, children, 0, index);
+            children[index] = leaf;
+            System.arraycopy(branch.children, index, children, index + 1, branch.children.length - index);
+            return new Branch(branch.bitmap | bit, children);
+        }
+        Node child = insert(branch.children[index], shift + BITS, leaf, grew);
+        Node[] children = branch.children.clone();
+        children[index] = child;
+        return new Branch(branch.bitmap, children);
+    }
+
+    /**
+     * Builds the branches separating a node from a leaf of a different hash.
+     */
+    private static Node split(Node node, int nodeHash, Leaf leaf, int shift) {
+        int nodeFragment = fragment(nodeHash, shift);
+        int leafFragment = fragment(leaf.hash, shift);
+        if (nodeFragment == leafFragment) {
+            return new Branch(1 << nodeFragment, new Node[] {split(node, nodeHash, leaf, shift + BITS)});
+        }
+        Node[] children = nodeFragment < leafFragment ? new Node[] {node, leaf} : new Node[] {leaf, node};
+        return new Branch((1 << nodeFragment) | (1 << leafFragment), children);
+    }
+
+    private static Node remove(Node node, int shift, int hash, Object key, boolean[] shrank) {
+        if (node == null) {
+            return null;
+        }
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            if (leaf.hash == hash && Objects.equals(leaf.key, key)) {
+                shrank[0] = true;
+                return null;
+            }
+            return node;
+        }
+        if (node instanceof Collision) {
+            Collision collision = (Collision) node;
+            return collision.hash == hash ? collision.without(key, shrank) : node;
+        }
+
+        Branch branch = (Branch) node;
+        int bit = bit(hash, shift);
+        if ((branch.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = index(branch.bitmap, bit);
+        Node child = remove(branch.children[index], shift + BITS, hash, key, shrank);
+        if (child == branch.children[index]) {
+            return node;
+        }
+
+        Node[] children;
+        int bitmap = branch.bitmap;
+        if (child == null) {
+            if (branch.children.length == 1) {
+                return null;
+            }
+            children = new Node[branch.children.length - 1];
+            System.arraycopy(branch.children, 0, children, 0, index);
+            System.arraycopy(branch.children, index + 1, children, index, children.length - index);
+            bitmap ^= bit;
+        } else {
+            children = branch.children.clone();
+            children[index] = child;
+        }
+        // A lone leaf moves up, lookups stop at the first leaf on the path anyway
+        if (children.length == 1 && !(children[0] instanceof Branch)) {
+            return children[0];
+        }
+        return new Branch(bitmap, children);
+    }
+
+    private static int hash(Object key) {
+        int hash = key == null ? 0 : key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int fragment(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << fragment(hash, shift);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private abstract static class Node {
+    }
+
+    /**
+     * One entry.
+     */
+    private static final class Leaf extends Node implements Map.Entry<Object, Object> {
+        private final int hash;
+        private final Object key;
+        private final Object value;
+
+        private Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException("PersistentMap is immutable");
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+            return Objects.equals(key, entry.getKey()) && Objects.equals(value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * The children that exist below one level, in fragment order.
+     */
+    private static final class Branch extends Node {
+        private final int bitmap;
+        private final Node[] children;
+
+        private Branch(int bitmap, Node[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    /**
+     * Entries whose keys have the same hash.
+     */
+    private static final class Collision extends Node {
+        private final int hash;
+        private final Leaf[] leaves;
+
+        private Collision(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        private Leaf find(Object key) {
+            for (Leaf leaf : leaves) {
+                if (Objects.equals(leaf.key, key)) {
+                    return leaf;
+                }
+            }
+            return null;
+        }
+
+        private Node with(Leaf leaf, boolean[] grew) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (Objects.equals(leaves[i].key, leaf.key)) {
+                    Leaf[] updated = leaves.clone();
+                    updated[i] = leaf;
+                    return new Collision(hash, updated);
+                }
+            }
+            grew[0] = true;
+            Leaf[] updated = new Leaf[leaves.length + 1];
+            System.arraycopy(leaves, 0, updated, 0, leaves.length);
+            updated[leaves.length] = leaf;
+            return new Collision(hash, updated);
+        }
+
+        private Node without(Object key, boolean[] shrank) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (Objects.equals(leaves[i].key, key)) {
+                    shrank[0] = true;
+                    if (leaves.length == 2) {
+                        return leaves[1 - i];
+                    }
+                    Leaf[] updated = new Leaf[leaves.length - 1];
+                    System.arraycopy(leaves, 0, updated, 0, i);
+                    System.arraycopy(leaves, i + 1, updated, i, updated.length - i);
+                    return new Collision(hash, updated);
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Walks the trie depth first, holding the nodes still to visit.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final Deque<Node> pending = new ArrayDeque<>();
+        private Leaf next;
+
+        private EntryIterator() {
+            if (root != null) {
+                pending.push(root);
+            }
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && !pending.isEmpty()) {
+                Node node = pending.pop();
+                if (node instanceof Leaf) {
+                    next = (Leaf) node;
+                } else if (node instanceof Collision) {
+                    for (Leaf leaf : ((Collision) node).leaves) {
+                        pending.push(leaf);
+                    }
+                } else {
+                    for (Node child : ((Branch) node).children) {
+                        pending.push(child);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf current = next;
+            advance();
+            return (Map.Entry<K, V>) (Map.Entry<?, ?>) current;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.depchain.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.datatypes.Address;
+import org.hyperledger.besu.datatypes.Hash;
+import org.hyperledger.besu.datatypes.Wei;
+import org.hyperledger.besu.evm.Code;
+import org.hyperledger.besu.evm.account.Account;
+import org.hyperledger.besu.evm.account.MutableAccount;
+import org.hyperledger.besu.evm.fluent.SimpleWorld;
+import org.hyperledger.besu.evm.worldstate.WorldUpdater;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.depchain.utils.Metrics;
+
+/**
+ * Runs ISTCoin calls both natively and on the EVM, from the same state, and checks they return
+ * the same data and write the same slots.
+ */
+class ISTCoinAcceleratorTest {
+    private static final String GENESIS_BLOCK_PATH = "src/main/resources/genesisBlock.json";
+    private static final String TOKEN_ADDRESS = "0x1b9d7Ff4Ab77A46049197C97358519ECe540F10D"; // As written in the genesis block
+    private static final Address TOKEN = Address.fromHexString(TOKEN_ADDRESS);
+    private static final Address MIGUEL = Address.fromHexString("0xA1B2C3D4E5F6A7B8C9D0E1F2A3B4C5D6E7F8A9B0"); // Owner
+    private static final Address GAMITO = Address.fromHexString("0x11223344556677889900AABBCCDDEEFF11223344");
+    private static final Address PEREIRA = Address.fromHexString("0xFEDCBA9876543210FEDCBA9876543210FEDCBA98");
+    private static final UInt256 SUPPLY = UInt256.valueOf(1_000_000);
+    private static final String PANIC_OVERFLOW = "0x4e487b710000000000000000000000000000000000000000000000000000000000000011";
+
+    private static Code code;
+    private static ContractExecutor evm; // Runs every call on the EVM
+    private static ContractExecutor verifying; // Runs every call both ways
+
+    private SimpleWorld world;
+
+    @BeforeAll
+    static void loadToken(@TempDir Path directory) throws Exception {
+        JSONObject genesis = new JSONObject(new String(Files.readAllBytes(Paths.get(GENESIS_BLOCK_PATH))));
+        code = ContractExecutor.code(genesis.getJSONObject("state").getJSONObject(TOKEN_ADDRESS).getString("code"));
+        evm = ContractExecutor.load(writeSetup(directory, "evm.json", "{\"evm\": {\"native\": false}}"));
+        verifying = ContractExecutor.load(writeSetup(directory, "verify.json", "{\"evm\": {\"native\": true, \"verify\": true}}"));
+    }
+
+    private static String writeSetup(Path directory, String name, String content) throws Exception {
+        Path path = directory.resolve(name);
+        Files.write(path, content.getBytes());
+        return path.toString();
+    }
+
+    @BeforeEach
+    void createWorld() {
+        world = new SimpleWorld();
+        for (Address account : new Address[] {MIGUEL, GAMITO, PEREIRA}) {
+            world.createAccount(account, 0, Wei.ZERO);
+        }
+        MutableAccount token = world.createAccount(TOKEN, 0, Wei.ZERO);
+        token.setCode(code.getBytes());
+        token.setStorageValue(UInt256.valueOf(0), UInt256.fromBytes(Bytes32.leftPad(MIGUEL)));
+        token.setStorageValue(UInt256.valueOf(2), SUPPLY);
+        token.setStorageValue(balanceSlot(MIGUEL), SUPPLY);
+    }
+
+    @Test
+    void recognisesGenesisToken() {
+        assertTrue(ISTCoinAccelerator.recognises(code));
+    }
+
+    @Test
+    void transfer() {
+        assertReturnedTrue(run(MIGUEL, call("a9059cbb", word(GAMITO), word(1000))));
+        assertEquals(UInt256.valueOf(1000), balance(GAMITO));
+        assertReturnedTrue(run(GAMITO, call("a9059cbb", word(GAMITO), word(400)))); // To oneself
+        assertReturnedTrue(run(GAMITO, call("a9059cbb", word(PEREIRA), word(1000))));
+        assertEquals(UInt256.ZERO, balance(GAMITO));
+    }
+
+    @Test
+    void transferReverts() {
+        assertReverted(run(GAMITO, call("a9059cbb", word(PEREIRA), word(1))), "Insufficient balance");
+        assertReverted(run(MIGUEL, call("a9059cbb", word(Address.ZERO), word(1))), "Invalid recipient");
+    }
+
+    @Test
+    void approveAndTransferFrom() {
+        assertReturnedTrue(run(MIGUEL, call("095ea7b3", word(GAMITO), word(300))));
+        assertReturnedTrue(run(GAMITO, call("23b872dd", word(MIGUEL), word(PEREIRA), word(200))));
+        assertEquals(UInt256.valueOf(100), UInt256.fromBytes(run(MIGUEL, call("dd62ed3e", word(MIGUEL), word(GAMITO))).getOutput()));
+        assertReverted(run(GAMITO, call("23b872dd", word(MIGUEL), word(PEREIRA), word(200))), "Allowance exceeded");
+        assertReverted(run(GAMITO, call("23b872dd", word(PEREIRA), word(GAMITO), word(300))), "Insufficient balance");
+        assertReverted(run(GAMITO, call("23b872dd", word(MIGUEL), word(Address.ZERO), word(1))), "Invalid recipient");
+        assertReverted(run(MIGUEL, call("095ea7b3", word(Address.ZERO), word(1))), "Invalid spender");
+        assertEquals(UInt256.valueOf(200), balance(PEREIRA));
+    }
+
+    @Test
+    void blacklist() {
+        assertReturnedTrue(run(MIGUEL, call("a9059cbb", word(GAMITO), word(1000))));
+        assertReverted(run(GAMITO, call("f9f92be4", word(PEREIRA))), "Only owner can call this function");
+        assertTrue(run(MIGUEL, call("f9f92be4", word(GAMITO))).isSuccess());
+        assertEquals(UInt256.ONE, UInt256.fromBytes(run(PEREIRA, call("fe575a87", word(GAMITO))).getOutput()));
+
+        assertReverted(run(GAMITO, call("a9059cbb", word(PEREIRA), word(1))), "Address is blacklisted");
+        assertReverted(run(MIGUEL, call("a9059cbb", word(GAMITO), word(1))), "Address is blacklisted");
+        assertReverted(run(GAMITO, call("095ea7b3", word(PEREIRA), word(1))), "Address is blacklisted");
+        assertReverted(run(PEREIRA, call("23b872dd", word(GAMITO), word(PEREIRA), word(1))), "Address is blacklisted");
+
+        assertTrue(run(MIGUEL, call("75e3661e", word(GAMITO))).isSuccess());
+        assertReturnedTrue(run(GAMITO, call("a9059cbb", word(PEREIRA), word(1))));
+    }
+
+    @Test
+    void getters() {
+        assertEquals(SUPPLY, UInt256.fromBytes(run(GAMITO, call("70a08231", word(MIGUEL))).getOutput()));
+        assertEquals(SUPPLY, UInt256.fromBytes(run(GAMITO, call("18160ddd")).getOutput()));
+        assertEquals(Bytes32.leftPad(MIGUEL), run(GAMITO, call("8da5cb5b")).getOutput());
+        assertEquals(UInt256.ZERO, UInt256.fromBytes(run(GAMITO, call("fe575a87", word(PEREIRA))).getOutput()));
+    }
+
+    @Test
+    void overflowIsLeftToTheEvm() {
+        world.getAccount(TOKEN).setStorageValue(balanceSlot(GAMITO), UInt256.MAX_VALUE);
+        Bytes callData = call("a9059cbb", word(GAMITO), word(1));
+        assertNull(ISTCoinAccelerator.call(world.updater().getAccount(TOKEN), MIGUEL, callData));
+        ContractExecutor.Result result = evm.call(world.updater(), MIGUEL, TOKEN, code, callData);
+        assertFalse(result.isSuccess());
+        assertEquals(Bytes.fromHexString(PANIC_OVERFLOW), result.getOutput());
+    }
+
+    @Test
+    void malformedCallsAreLeftToTheEvm() {
+        Bytes dirtyAddress = Bytes.concatenate(Bytes.fromHexString("0xff"), word(GAMITO).slice(1));
+        for (Bytes callData : new Bytes[] {
+                Bytes.fromHexString("0x12"),
+                call("a9059cbb", word(GAMITO)),
+                call("a9059cbb", dirtyAddress, word(1)),
+                call("06fdde03")}) {
+            assertNull(ISTCoinAccelerator.call(world.updater().getAccount(TOKEN), MIGUEL, callData));
+        }
+    }
+
+    @Test
+    void verifyModeFindsNoMismatch() {
+        long before = mismatches();
+        WorldUpdater block = world.updater();
+        assertTrue(verifying.call(block, MIGUEL, TOKEN, code, call("095ea7b3", word(GAMITO), word(300))).isSuccess());
+        assertTrue(verifying.call(block, GAMITO, TOKEN, code, call("23b872dd", word(MIGUEL), word(PEREIRA), word(200))).isSuccess());
+        assertFalse(verifying.call(block, GAMITO, TOKEN, code, call("23b872dd", word(MIGUEL), word(PEREIRA), word(200))).isSuccess());
+        assertTrue(verifying.call(block, MIGUEL, TOKEN, code, call("f9f92be4", word(PEREIRA))).isSuccess());
+        assertFalse(verifying.call(block, PEREIRA, TOKEN, code, call("a9059cbb", word(GAMITO), word(1))).isSuccess());
+        assertEquals(before, mismatches());
+    }
+
+    /**
+     * Runs a call natively and on the EVM, each in its own child of the world, checks both
+     * outcomes are the same and commits the EVM's.
+     */
+    private ContractExecutor.Result run(Address sender, Bytes callData) {
+        Account before = world.get(TOKEN);
+        WorldUpdater nativeWorld = world.updater();
+        ContractExecutor.Result actual = ISTCoinAccelerator.call(nativeWorld.getAccount(TOKEN), sender, callData);
+        WorldUpdater evmWorld = world.updater();
+        ContractExecutor.Result expected = evm.call(evmWorld, sender, TOKEN, code, callData);
+
+        String description = callData.toHexString() + " from " + sender;
+        assertTrue(actual != null, "Left to the EVM: " + description);
+        assertEquals(expected.isSuccess(), actual.isSuccess(), "Outcome of " + description);
+        assertEquals(expected.getOutput(), actual.getOutput(), "Output of " + description);
+        Map<UInt256, UInt256> expectedWrites = writes(evmWorld.getAccount(TOKEN), before);
+        if (expected.isSuccess()) {
+            assertEquals(expectedWrites, writes(nativeWorld.getAccount(TOKEN), before), "Writes of " + description);
+        } else {
+            assertTrue(expectedWrites.isEmpty(), "Writes of reverted " + description);
+        }
+        evmWorld.commit();
+        return expected;
+    }
+
+    private static Map<UInt256, UInt256> writes(MutableAccount account, Account before) {
+        Map<UInt256, UInt256> writes = new HashMap<>();
+        account.getUpdatedStorage().forEach((key, value) -> {
+            if (!value.equals(before.getStorageValue(key))) {
+                writes.put(key, value);
+            }
+        });
+        return writes;
+    }
+
+    private static void assertReturnedTrue(ContractExecutor.Result result) {
+        assertTrue(result.isSuccess());
+        assertEquals(UInt256.ONE, UInt256.fromBytes(result.getOutput()));
+    }
+
+    private static void assertReverted(ContractExecutor.Result result, String reason) {
+        assertFalse(result.isSuccess());
+        Bytes output = result.getOutput();
+        int length = UInt256.fromBytes(output.slice(36, 32)).intValue();
+        assertEquals(reason, new String(output.slice(68, length).toArrayUnsafe()));
+    }
+
+    private UInt256 balance(Address account) {
+        return world.get(TOKEN).getStorageValue(balanceSlot(account));
+    }
+
+    private static long mismatches() {
+        Metrics.Stat stat = Metrics.get("native_mismatches");
+        return stat == null ? 0 : stat.getCount();
+    }
+
+    private static UInt256 balanceSlot(Address account) {
+        return UInt256.fromBytes(Hash.hash(Bytes.concatenate(Bytes32.leftPad(account), UInt256.valueOf(3))));
+    }
+
+    private static Bytes call(String selector, Bytes... arguments) {
+        return Bytes.concatenate(Bytes.fromHexString(selector), Bytes.concatenate(arguments));
+    }
+
+    private static Bytes word(Address address) {
+        return Bytes32.leftPad(address);
+    }
+
+    private static Bytes word(long value) {
+        return UInt256.valueOf(value);
+    }
+}